@@ -0,0 +1,114 @@
+package fancybank.bench;
+
+import java.awt.Graphics;
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Handles to the application classes. They live in the default package, which named packages cannot
+ * import, so they are reached through method handles; static final handles are constant-folded by the JIT.
+ */
+final class App {
+    static final MethodHandle GET_BALANCE;
+    static final MethodHandle UPDATE_BALANCE;
+    static final MethodHandle REPLACE_ALL_USERS;
+    static final MethodHandle PARSE_RECORD;
+    static final MethodHandle RECORD_TIMESTAMP;
+    static final MethodHandle FOR_EACH_RECORD;
+    static final MethodHandle HISTORY_FILE;
+    static final MethodHandle APPEND_HISTORY;
+    static final MethodHandle NEW_SERIES;
+    static final MethodHandle SERIES_ADD;
+    static final MethodHandle NEW_CHART;
+    static final MethodHandle PAINT_CHART;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            // Not initialized yet: UserManager opens the account store as it initializes, which must wait
+            // until requireScratchDirectory() has checked the working directory
+            Class<?> userManager = appClass("UserManager");
+            Class<?> record = appClass("TransactionRecord");
+            Class<?> historyStore = appClass("HistoryStore");
+            Class<?> series = appClass("DoubleSeries");
+            Class<?> chart = appClass("ChartPanel");
+
+            GET_BALANCE = lookup.findStatic(userManager, "getBalance", MethodType.methodType(double.class, String.class));
+            UPDATE_BALANCE = lookup.findStatic(userManager, "updateBalance", MethodType.methodType(void.class, String.class, double.class));
+            REPLACE_ALL_USERS = lookup.findStatic(userManager, "replaceAllUsers", MethodType.methodType(void.class, Map.class));
+            PARSE_RECORD = lookup.findStatic(record, "fromString", MethodType.methodType(record, String.class))
+                    .asType(MethodType.methodType(Object.class, String.class));
+            RECORD_TIMESTAMP = lookup.findVirtual(record, "getTimestampDate", MethodType.methodType(java.time.LocalDateTime.class))
+                    .asType(MethodType.methodType(java.time.LocalDateTime.class, Object.class));
+            FOR_EACH_RECORD = lookup.findStatic(historyStore, "forEachRecord", MethodType.methodType(void.class, String.class, Consumer.class));
+            HISTORY_FILE = lookup.findStatic(historyStore, "fileFor", MethodType.methodType(File.class, String.class));
+            APPEND_HISTORY = lookup.findStatic(historyStore, "append", MethodType.methodType(void.class, String.class, String.class));
+
+            NEW_SERIES = lookup.findConstructor(series, MethodType.methodType(void.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class));
+            SERIES_ADD = lookup.findVirtual(series, "add", MethodType.methodType(void.class, double.class))
+                    .asType(MethodType.methodType(void.class, Object.class, double.class));
+
+            // ChartPanel is package-private, so its members are opened reflectively
+            java.lang.reflect.Constructor<?> chartConstructor = chart.getDeclaredConstructor(series);
+            chartConstructor.setAccessible(true);
+            NEW_CHART = lookup.unreflectConstructor(chartConstructor)
+                    .asType(MethodType.methodType(javax.swing.JComponent.class, Object.class));
+            java.lang.reflect.Method paint = chart.getDeclaredMethod("paintComponent", Graphics.class);
+            paint.setAccessible(true);
+            PAINT_CHART = lookup.unreflect(paint)
+                    .asType(MethodType.methodType(void.class, javax.swing.JComponent.class, Graphics.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private App() {
+    }
+
+    private static Class<?> appClass(String name) throws ClassNotFoundException {
+        return Class.forName(name, false, App.class.getClassLoader());
+    }
+
+    /**
+     * The application reads and writes the account store and history files in the working directory;
+     * refuse to run anywhere that could hold real account data.
+     */
+    static void requireScratchDirectory() {
+        boolean hasAccounts = new File("users.dat").exists() || new File("users.shards").exists();
+        if (hasAccounts && !new File(".fancybank-bench").exists()) {
+            throw new IllegalStateException("Run the benchmarks from an empty working directory: "
+                    + new File("").getAbsolutePath() + " already has an account store");
+        }
+        try {
+            new File(".fancybank-bench").createNewFile();
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Replaces the account store with count users named user0..user{count-1}, saved once.
+     */
+    static void createUsers(int count) throws Throwable {
+        Map<String, String[]> users = new java.util.HashMap<>();
+        for (int i = 0; i < count; i++) {
+            users.put(user(i), new String[]{"1000.0", "1234", "false"});
+        }
+        REPLACE_ALL_USERS.invokeExact(users);
+    }
+
+    static String user(int i) {
+        return "user" + i;
+    }
+
+    static String historyLine(int i, double balance) {
+        return String.format("[2024-%02d-%02d %02d:%02d:%02d] %s: $%,.2f - Balance: $%,.2f",
+                1 + i % 12, 1 + i % 28, i % 24, i % 60, (i * 7) % 60,
+                i % 3 == 0 ? "Withdrawal" : "Deposit", 10 + (i % 5000) / 100.0, balance);
+    }
+}
@@ -0,0 +1,72 @@
+package fancybank.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.swing.JComponent;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless rendering of the balance chart: a full redraw of a series, and the incremental
+ * path where one point is appended and the chart repainted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ChartRenderBenchmark {
+    @Param({"100", "10000", "100000"})
+    public int historySize;
+
+    private Object series;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private double balance;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Throwable {
+        series = (Object) App.NEW_SERIES.invokeExact(100_000);
+        balance = 1000;
+        for (int i = 0; i < historySize; i++) {
+            App.SERIES_ADD.invokeExact(series, balance += Math.sin(i) * 50);
+        }
+        image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage fullRender() throws Throwable {
+        // A new panel has no back buffer, so every call renders the whole series
+        JComponent chart = (JComponent) App.NEW_CHART.invokeExact(series);
+        chart.setSize(image.getWidth(), image.getHeight());
+        App.PAINT_CHART.invokeExact(chart, (java.awt.Graphics) graphics);
+        return image;
+    }
+
+    @State(Scope.Thread)
+    public static class LiveChart {
+        JComponent chart;
+
+        @Setup(Level.Iteration)
+        public void setUp(ChartRenderBenchmark benchmark) throws Throwable {
+            chart = (JComponent) App.NEW_CHART.invokeExact(benchmark.series);
+            chart.setSize(benchmark.image.getWidth(), benchmark.image.getHeight());
+            App.PAINT_CHART.invokeExact(chart, (java.awt.Graphics) benchmark.graphics);
+        }
+    }
+
+    @Benchmark
+    public BufferedImage appendAndRepaint(LiveChart live) throws Throwable {
+        App.SERIES_ADD.invokeExact(series, balance += 1);
+        App.PAINT_CHART.invokeExact(live.chart, (java.awt.Graphics) graphics);
+        return image;
+    }
+}
@@ -0,0 +1,84 @@
+package fancybank.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * History files: appending one transaction line (as every deposit or withdrawal does) and loading
+ * every user's history the way the admin panel's DataRefreshWorker does.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryBenchmark {
+    @Param({"10", "1000"})
+    public int users;
+
+    @Param({"100", "10000"})
+    public int historySize;
+
+    private String line;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        App.requireScratchDirectory();
+        App.createUsers(users);
+        for (int u = 0; u < users; u++) {
+            File file = (File) App.HISTORY_FILE.invokeExact(App.user(u));
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+                double balance = 1000;
+                for (int i = 0; i < historySize; i++) {
+                    writer.write(App.historyLine(i, balance += 1.25));
+                    writer.newLine();
+                }
+            }
+        }
+        line = App.historyLine(7, 1234.5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        for (int u = 0; u < users; u++) {
+            ((File) App.HISTORY_FILE.invokeExact(App.user(u))).delete();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void appendTransaction() throws Throwable {
+        // Spread over the users so no single file grows without bound during the run
+        App.APPEND_HISTORY.invokeExact(App.user(next++ % users), line);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5, batchSize = 1)
+    public void loadAllHistories(Blackhole blackhole) throws Throwable {
+        Map<String, List<Object>> loaded = new HashMap<>();
+        for (int u = 0; u < users; u++) {
+            List<Object> records = new ArrayList<>();
+            App.FOR_EACH_RECORD.invokeExact(App.user(u), (java.util.function.Consumer) records::add);
+            // Newest first, as the refresh worker sorts them
+            records.sort(Comparator.comparing(HistoryBenchmark::timestamp).reversed());
+            loaded.put(App.user(u), records);
+        }
+        blackhole.consume(loaded);
+    }
+
+    private static LocalDateTime timestamp(Object record) {
+        try {
+            return (LocalDateTime) App.RECORD_TIMESTAMP.invokeExact(record);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
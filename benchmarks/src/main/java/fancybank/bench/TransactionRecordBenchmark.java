@@ -0,0 +1,33 @@
+package fancybank.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing one history line into a TransactionRecord.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionRecordBenchmark {
+    private String[] lines;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lines = new String[1024];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = App.historyLine(i, 1000 + i * 3.5);
+        }
+    }
+
+    @Benchmark
+    public Object fromString() throws Throwable {
+        String line = lines[next++ & (lines.length - 1)];
+        return (Object) App.PARSE_RECORD.invokeExact(line);
+    }
+}
@@ -0,0 +1,39 @@
+package fancybank.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balance reads and writes against the account store, from several threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class UserManagerBenchmark {
+    @Param({"100", "10000"})
+    public int users;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        App.requireScratchDirectory();
+        App.createUsers(users);
+    }
+
+    @Benchmark
+    public double getBalance() throws Throwable {
+        return (double) App.GET_BALANCE.invokeExact(App.user(ThreadLocalRandom.current().nextInt(users)));
+    }
+
+    // Every update rewrites its account's shard file, so this measures the persistence cost under contention
+    @Benchmark
+    public void updateBalance() throws Throwable {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        App.UPDATE_BALANCE.invokeExact(App.user(random.nextInt(users)), 1000.0 + random.nextInt(1000));
+    }
+}
@@ -0,0 +1,203 @@
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Banking operations without any UI: deposits, withdrawals, balances and history.
+ * Safe to call from any thread; operations on the same account are serialized by a per-account lock,
+ * while different accounts proceed in parallel (apart from accounts sharing a store shard). The locks on
+ * this path are ReentrantLocks rather than monitors, as they are held across file writes and a virtual
+ * thread blocked inside a monitor would pin its carrier thread.
+ */
+public class AccountService {
+    private static final ConcurrentHashMap<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private static final LatencyHistogram transactionTimer = Metrics.timer(Metrics.TRANSACTION);
+
+    /**
+     * Outcome of a deposit or withdrawal. On failure only the message and the unchanged balance are meaningful.
+     */
+    public static class TransactionResult {
+        private final boolean success;
+        private final String message;
+        private final String type;
+        private final long amountCents;
+        private final double balance;
+        private final LocalDateTime timestamp;
+        private final String id;
+        private final boolean duplicate;
+
+        private TransactionResult(boolean success, String message, String type, long amountCents,
+                                  double balance, LocalDateTime timestamp, String id, boolean duplicate) {
+            this.success = success;
+            this.message = message;
+            this.type = type;
+            this.amountCents = amountCents;
+            this.balance = balance;
+            this.timestamp = timestamp;
+            this.id = id;
+            this.duplicate = duplicate;
+        }
+
+        static TransactionResult failure(String message, double balance) {
+            return new TransactionResult(false, message, null, 0, balance, null, null, false);
+        }
+
+        static TransactionResult duplicate(String id, double balance) {
+            return new TransactionResult(false, "Transaction " + id + " was already applied", null, 0,
+                    balance, null, id, true);
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public double getAmount() {
+            return amountCents / 100.0;
+        }
+
+        public long getAmountCents() {
+            return amountCents;
+        }
+
+        /**
+         * Balance after the transaction, or the current balance if it failed.
+         */
+        public double getBalance() {
+            return balance;
+        }
+
+        public LocalDateTime getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * The transaction's ID, as supplied or generated; null if the request was rejected before it got one.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * True if a transaction with this ID had already been applied to the account, so nothing was changed.
+         */
+        public boolean isDuplicate() {
+            return duplicate;
+        }
+    }
+
+    public static TransactionResult deposit(String username, long cents) {
+        return deposit(username, cents, null);
+    }
+
+    public static TransactionResult withdraw(String username, long cents) {
+        return withdraw(username, cents, null);
+    }
+
+    /**
+     * Deposits unless a transaction with the same ID was already applied to the account; a null ID
+     * gets a generated one. Callers that may retry should supply their own ID.
+     */
+    public static TransactionResult deposit(String username, long cents, String id) {
+        return apply(username, "Deposit", cents, id);
+    }
+
+    public static TransactionResult withdraw(String username, long cents, String id) {
+        return apply(username, "Withdrawal", cents, id);
+    }
+
+    public static double getBalance(String username) {
+        return UserManager.getBalance(username);
+    }
+
+    /**
+     * Returns up to limit of the user's most recent transactions, newest first.
+     */
+    public static List<TransactionRecord> getHistory(String username, int limit) {
+        List<TransactionRecord> records = new ArrayList<>();
+        for (String line : HistoryStore.readLastLines(username, limit)) {
+            TransactionRecord record = TransactionRecord.fromString(line);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static TransactionResult apply(String username, String type, long cents, String id) {
+        long start = System.nanoTime();
+        try {
+            return applyLocked(username, type, cents, id == null ? TransactionIds.generate() : id);
+        } finally {
+            transactionTimer.record(System.nanoTime() - start);
+        }
+    }
+
+    private static TransactionResult applyLocked(String username, String type, long cents, String id) {
+        if (!UserManager.userExists(username)) {
+            return TransactionResult.failure("No such account: " + username, 0);
+        }
+        if (!TransactionIds.isValid(id)) {
+            return TransactionResult.failure("Transaction IDs are 1 to " + TransactionIds.MAX_ID_LENGTH
+                    + " letters, digits or . _ : -", UserManager.getBalance(username));
+        }
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            // In multi-process mode this also keeps other processes off the account until the history is written
+            return UserManager.withAccountLock(username, () -> applyToAccount(username, type, cents, id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the account's lock
+    private static TransactionResult applyToAccount(String username, String type, long cents, String id) {
+        if (TransactionIds.contains(username, id)) {
+            return TransactionResult.duplicate(id, UserManager.getBalance(username));
+        }
+        // Same rules as the window always applied, on a fresh copy of the stored balance
+        BankAccount account = new BankAccount(UserManager.getBalance(username));
+        double before = account.getBalance();
+        double amount = cents / 100.0;
+        try {
+            if (type.equals("Deposit")) {
+                account.deposit(amount);
+            } else {
+                account.withdraw(amount);
+            }
+        } catch (IllegalArgumentException e) {
+            return TransactionResult.failure(e.getMessage(), before);
+        }
+        double balance = Math.round(account.getBalance() * 100) / 100.0;
+
+        LocalDateTime now = LocalDateTime.now();
+        // The history is the ledger of record: nothing changes unless its line is written
+        try {
+            HistoryStore.append(username, TransactionRecord.toHistoryLine(now, type, amount, balance, id));
+        } catch (IOException e) {
+            System.err.println("Error writing transaction history for " + username + ": " + e.getMessage());
+            return TransactionResult.failure("Could not record the transaction; nothing was changed", before);
+        }
+        UserManager.updateBalance(username, balance);
+        TransactionIds.add(username, id);
+        RollupStore.record(username, type, amount, now);
+        String verb = type.equals("Deposit") ? "deposited" : "withdrew";
+        return new TransactionResult(true, String.format("Successfully %s $%,.2f", verb, amount),
+                type, cents, balance, now, id, false);
+    }
+
+    private static ReentrantLock lockFor(String username) {
+        return locks.computeIfAbsent(username, key -> new ReentrantLock());
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * One partition of the account store: the accounts whose username hashes to it, held in memory and
+ * saved to a file of their own (users-&lt;shard count&gt;-&lt;index&gt;.dat). A change to one account
+ * rewrites only its shard, and callers lock each shard on its own, so unrelated accounts neither
+ * wait for each other nor pay for each other's persistence.
+ * <p>
+ * Lives outside UserManager because shards load on pool threads while UserManager is still initializing;
+ * code of a class under initialization would block them.
+ */
+class AccountShard {
+    private static final LatencyHistogram saveTimer = Metrics.timer(Metrics.SAVE_USERS);
+
+    final int index;
+    final File file;
+    final Map<String, String[]> users = new HashMap<>();
+    // Guards users and retired; held while the shard file is written
+    final ReentrantLock lock = new ReentrantLock();
+    // Set, under the shard's lock, once a reshard has replaced it; callers then look the shard up again
+    boolean retired;
+
+    AccountShard(int index, int count) {
+        this.index = index;
+        this.file = fileFor(index, count);
+    }
+
+    static File fileFor(int index, int count) {
+        return new File("users-" + count + "-" + index + ".dat");
+    }
+
+    static int indexFor(String username, int count) {
+        int h = username.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), count);
+    }
+
+    /**
+     * Loads the count shard files in parallel. A missing file is an empty shard.
+     */
+    static AccountShard[] loadAll(int count) {
+        AccountShard[] shards = new AccountShard[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            shards[i] = new AccountShard(i, count);
+            shards[i].load();
+        });
+        return shards;
+    }
+
+    /**
+     * Splits the accounts into count new shards and saves them in parallel. Empty shards get no file.
+     */
+    static AccountShard[] partition(Map<String, String[]> users, int count) {
+        AccountShard[] shards = new AccountShard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new AccountShard(i, count);
+        }
+        for (Map.Entry<String, String[]> entry : users.entrySet()) {
+            shards[indexFor(entry.getKey(), count)].users.put(entry.getKey(), entry.getValue());
+        }
+        IntStream.range(0, count).parallel().filter(i -> !shards[i].users.isEmpty()).forEach(i -> shards[i].save(null));
+        return shards;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Object obj = ois.readObject();
+            if (obj instanceof Map) {
+                users.putAll((Map<String, String[]>) obj);
+            } else {
+                System.err.println("Invalid data format in " + file + ". Its accounts were not loaded.");
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Failed to load user data from " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the shard file. Caller holds the shard's lock; username is the account whose change
+     * is being saved, or null for bulk updates.
+     */
+    void save(String username) {
+        long start = System.nanoTime();
+        BankEvents.AccountStoreSave event = new BankEvents.AccountStoreSave();
+        event.begin();
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            oos.writeObject(users);
+        } catch (IOException e) {
+            System.err.println("Error saving user data to " + file + ": " + e.getMessage());
+        }
+        saveTimer.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.username = username;
+            event.shard = index;
+            event.accounts = users.size();
+            event.bytes = file.length();
+            event.commit();
+        }
+    }
+}
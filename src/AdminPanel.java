@@ -5,8 +5,11 @@ import java.awt.*;
 import java.io.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class AdminPanel extends JFrame {
     private JList<String> usersList;
@@ -14,27 +17,42 @@ public class AdminPanel extends JFrame {
     private JLabel statusLabel;
     private JButton refreshButton;
     private JButton alertSettingsButton;
-    private DefaultListModel<String> usersModel;
+    private UserListModel usersModel;
     private JScrollPane activityScrollPane;
     private JPanel transactionPanel;
+    private HistoryTable transactionTable;
     private JPanel chartPanel;
-    private boolean darkMode = true;
+    private VolumeChart volumeChart;
     private final Color brandBlue = new Color(0, 102, 204);
     private final Color brandGold = new Color(204, 153, 0);
     private final Color warningColor = new Color(255, 102, 102);
-    private Map<String, List<TransactionRecord>> allTransactions;
     private JTabbedPane tabPane;
+    private MetricsTableModel metricsModel;
+    private javax.swing.Timer metricsTimer;
 
     // Alert thresholds
     private static double LARGE_DEPOSIT_THRESHOLD = 10000.0;
     private static double LARGE_WITHDRAWAL_THRESHOLD = 5000.0;
     private static int FREQUENT_TRANSACTION_COUNT = 5;
     private static int FREQUENT_TRANSACTION_HOURS = 24;
+    // Flag amounts above this percentile of the user's own history (0 disables)
+    private static double ADAPTIVE_PERCENTILE = 99.0;
+    // Users with fewer transactions are compared against the bank-wide distribution
+    private static final int ADAPTIVE_MIN_SAMPLES = 20;
+
+    // Bounds on alert output as history grows
+    private static final int MAX_REPORTED_ALERTS = 50;
+    private static final int MAX_ACTIVITY_LOG_LINES = 5000;
+    private static final int METRICS_REFRESH_MILLIS = 1000;
+    private static final LatencyHistogram refreshTimer = Metrics.timer(Metrics.ADMIN_REFRESH);
+    // One analysis at a time: each advances the users' AlertStore state
+    private static final ReentrantLock analysisLock = new ReentrantLock();
 
     private JTextField depositField;
     private JTextField withdrawalField;
     private JTextField freqCountField;
     private JTextField timeWindowField;
+    private JTextField percentileField;
     private JTextField emailField;
 
     public AdminPanel(String adminUsername) {
@@ -43,12 +61,9 @@ public class AdminPanel extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
-        allTransactions = new HashMap<>();
-
         loadAlertSettings();  // Load settings on startup before UI init
         initComponents();
         loadAllUsers();
-        loadAllTransactions();
         checkForSuspiciousActivity();
 
         setVisible(true);
@@ -61,22 +76,18 @@ public class AdminPanel extends JFrame {
         // North panel: title and admin info
         JPanel northPanel = new JPanel(new BorderLayout());
         northPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 5, 10));
-        if (darkMode) northPanel.setBackground(new Color(40, 40, 40));
 
         JLabel titleLabel = new JLabel("FancyBank™ Administration");
         titleLabel.setFont(new Font("Serif", Font.BOLD, 28));
         titleLabel.setForeground(brandBlue);
 
         JPanel titlePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        if (darkMode) titlePanel.setBackground(new Color(40, 40, 40));
         titlePanel.add(titleLabel);
 
         statusLabel = new JLabel("Monitoring for suspicious activity");
         statusLabel.setFont(new Font("SansSerif", Font.ITALIC, 14));
-        if (darkMode) statusLabel.setForeground(Color.LIGHT_GRAY);
 
         JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        if (darkMode) statusPanel.setBackground(new Color(40, 40, 40));
         statusPanel.add(statusLabel);
 
         northPanel.add(titlePanel, BorderLayout.WEST);
@@ -84,10 +95,6 @@ public class AdminPanel extends JFrame {
 
         // Center panel with tabbed interface
         tabPane = new JTabbedPane();
-        if (darkMode) {
-            tabPane.setBackground(new Color(50, 50, 50));
-            tabPane.setForeground(Color.WHITE);
-        }
 
         // Users panel
         JPanel usersPanel = createUsersPanel();
@@ -101,10 +108,13 @@ public class AdminPanel extends JFrame {
         JPanel alertsPanel = createAlertsPanel();
         tabPane.addTab("Alerts", null, alertsPanel, "Configure alert thresholds");
 
+        // Metrics panel
+        JPanel metricsPanel = createMetricsPanel();
+        tabPane.addTab("Metrics", null, metricsPanel, "Latency and throughput of core operations");
+
         // South panel: controls
         JPanel southPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         southPanel.setBorder(BorderFactory.createEmptyBorder(5, 10, 10, 10));
-        if (darkMode) southPanel.setBackground(new Color(40, 40, 40));
 
         refreshButton = new SmoothButton("Refresh Data", brandBlue, brandBlue, brandBlue.darker(), new Font("SansSerif", Font.BOLD, 14));
         refreshButton.addActionListener(e -> refreshData());
@@ -112,74 +122,92 @@ public class AdminPanel extends JFrame {
         alertSettingsButton = new SmoothButton("Alert Settings", brandBlue, brandBlue, brandBlue.darker(), new Font("SansSerif", Font.BOLD, 14));
         alertSettingsButton.addActionListener(e -> showAlertSettings());
 
+        SmoothButton themeButton = new SmoothButton("Toggle Theme", brandBlue, brandBlue, brandBlue.darker(), new Font("SansSerif", Font.BOLD, 14));
+        themeButton.addActionListener(e -> toggleTheme());
+
         SmoothButton closeButton = new SmoothButton("Close Panel", brandBlue, new Color(100, 100, 100), new Color(70, 70, 70), new Font("SansSerif", Font.BOLD, 14));
         closeButton.addActionListener(e -> dispose());
 
         southPanel.add(refreshButton);
         southPanel.add(alertSettingsButton);
+        southPanel.add(themeButton);
         southPanel.add(closeButton);
 
         // Add components to container
         container.add(northPanel, BorderLayout.NORTH);
         container.add(tabPane, BorderLayout.CENTER);
         container.add(southPanel, BorderLayout.SOUTH);
-
-        // Apply dark mode to all components
-        if (darkMode) {
-            applyDarkMode(container);
-        }
     }
 
     private JPanel createUsersPanel() {
         JPanel panel = new JPanel(new BorderLayout());
-        if (darkMode) panel.setBackground(new Color(40, 40, 40));
 
         // Left side: user list
         JPanel leftPanel = new JPanel(new BorderLayout());
         leftPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 5));
-        if (darkMode) leftPanel.setBackground(new Color(40, 40, 40));
 
         JLabel usersLabel = new JLabel("Registered Users:");
         usersLabel.setFont(new Font("SansSerif", Font.BOLD, 14));
-        if (darkMode) usersLabel.setForeground(Color.WHITE);
+        usersLabel.setForeground(ThemeManager.HEADING);
 
-        usersModel = new DefaultListModel<>();
+        usersModel = new UserListModel();
         usersList = new JList<>(usersModel);
         usersList.setFont(new Font("SansSerif", Font.PLAIN, 14));
-        if (darkMode) {
-            usersList.setBackground(new Color(60, 60, 60));
-            usersList.setForeground(Color.WHITE);
-        }
+        // Fixed cell size, so the list never measures every user
+        usersList.setFixedCellHeight(22);
+        usersList.setFixedCellWidth(180);
+
+        JTextField searchField = new JTextField();
+        searchField.setFont(new Font("SansSerif", Font.PLAIN, 14));
+        searchField.setToolTipText("Search users");
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                applySearch();
+            }
+
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                applySearch();
+            }
+
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                applySearch();
+            }
+
+            private void applySearch() {
+                usersList.clearSelection();
+                usersModel.filter(searchField.getText());
+            }
+        });
 
         JScrollPane usersScrollPane = new JScrollPane(usersList);
         usersScrollPane.setPreferredSize(new Dimension(200, 500));
 
-        leftPanel.add(usersLabel, BorderLayout.NORTH);
+        JPanel listHeader = new JPanel(new BorderLayout(0, 5));
+        listHeader.add(usersLabel, BorderLayout.NORTH);
+        listHeader.add(searchField, BorderLayout.SOUTH);
+
+        leftPanel.add(listHeader, BorderLayout.NORTH);
         leftPanel.add(usersScrollPane, BorderLayout.CENTER);
 
         // Right side: user details and transactions
         JPanel rightPanel = new JPanel(new BorderLayout());
         rightPanel.setBorder(BorderFactory.createEmptyBorder(10, 5, 10, 10));
-        if (darkMode) rightPanel.setBackground(new Color(40, 40, 40));
 
         transactionPanel = new JPanel(new BorderLayout());
         transactionPanel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(),
                 "User Transactions", TitledBorder.DEFAULT_JUSTIFICATION,
                 TitledBorder.DEFAULT_POSITION,
                 new Font("SansSerif", Font.BOLD, 14),
-                darkMode ? Color.WHITE : Color.BLACK));
-        if (darkMode) transactionPanel.setBackground(new Color(40, 40, 40));
+                ThemeManager.HEADING));
 
-        JTextArea transactionArea = new JTextArea();
-        transactionArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
-        transactionArea.setEditable(false);
-        if (darkMode) {
-            transactionArea.setBackground(new Color(60, 60, 60));
-            transactionArea.setForeground(Color.WHITE);
-            transactionArea.setCaretColor(Color.WHITE);
-        }
+        transactionTable = new HistoryTable();
+        transactionTable.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        transactionTable.setRowHeight(20);
 
-        JScrollPane transactionScroll = new JScrollPane(transactionArea);
+        JScrollPane transactionScroll = new JScrollPane(transactionTable);
         transactionPanel.add(transactionScroll, BorderLayout.CENTER);
 
         chartPanel = new JPanel(new BorderLayout());
@@ -187,20 +215,30 @@ public class AdminPanel extends JFrame {
                 "Activity Chart", TitledBorder.DEFAULT_JUSTIFICATION,
                 TitledBorder.DEFAULT_POSITION,
                 new Font("SansSerif", Font.BOLD, 14),
-                darkMode ? Color.WHITE : Color.BLACK));
-        if (darkMode) chartPanel.setBackground(new Color(40, 40, 40));
+                ThemeManager.HEADING));
         chartPanel.setPreferredSize(new Dimension(400, 200));
 
+        // Bank-wide volume until a user is selected; backed by the hourly rollups
+        JComboBox<String> rangeCombo = new JComboBox<>(VolumeChart.RANGE_NAMES);
+        rangeCombo.setSelectedIndex(1);
+        rangeCombo.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        volumeChart = new VolumeChart();
+        rangeCombo.addActionListener(e -> volumeChart.setRange(rangeCombo.getSelectedIndex()));
+
+        JPanel rangePanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        rangePanel.add(rangeCombo);
+
+        chartPanel.add(rangePanel, BorderLayout.NORTH);
+        chartPanel.add(volumeChart, BorderLayout.CENTER);
+
         JPanel userInfoPanel = new JPanel(new BorderLayout());
-        if (darkMode) userInfoPanel.setBackground(new Color(40, 40, 40));
 
         JLabel userInfoLabel = new JLabel("Select a user to view details");
         userInfoLabel.setFont(new Font("SansSerif", Font.BOLD, 14));
-        if (darkMode) userInfoLabel.setForeground(Color.WHITE);
+        userInfoLabel.setForeground(ThemeManager.HEADING);
         userInfoPanel.add(userInfoLabel, BorderLayout.NORTH);
 
         JPanel userStatsPanel = new JPanel(new GridLayout(3, 2, 10, 5));
-        if (darkMode) userStatsPanel.setBackground(new Color(40, 40, 40));
 
         JLabel balanceLabel = new JLabel("Current Balance:");
         JLabel balanceValue = new JLabel("$0.00");
@@ -209,14 +247,12 @@ public class AdminPanel extends JFrame {
         JLabel lastLoginLabel = new JLabel("Last Activity:");
         JLabel lastLoginValue = new JLabel("N/A");
 
-        if (darkMode) {
-            balanceLabel.setForeground(Color.WHITE);
-            balanceValue.setForeground(brandGold);
-            transCountLabel.setForeground(Color.WHITE);
-            transCountValue.setForeground(Color.WHITE);
-            lastLoginLabel.setForeground(Color.WHITE);
-            lastLoginValue.setForeground(Color.WHITE);
-        }
+        balanceLabel.setForeground(ThemeManager.HEADING);
+        balanceValue.setForeground(ThemeManager.BALANCE);
+        transCountLabel.setForeground(ThemeManager.HEADING);
+        transCountValue.setForeground(ThemeManager.HEADING);
+        lastLoginLabel.setForeground(ThemeManager.HEADING);
+        lastLoginValue.setForeground(ThemeManager.HEADING);
 
         userStatsPanel.add(balanceLabel);
         userStatsPanel.add(balanceValue);
@@ -236,7 +272,8 @@ public class AdminPanel extends JFrame {
             if (!e.getValueIsAdjusting()) {
                 String selectedUser = usersList.getSelectedValue();
                 if (selectedUser != null) {
-                    updateUserDetails(selectedUser, transactionArea, balanceValue, transCountValue, lastLoginValue);
+                    updateUserDetails(selectedUser, transactionTable, balanceValue, transCountValue, lastLoginValue);
+                    volumeChart.setKey(selectedUser);
                 }
             }
         });
@@ -250,25 +287,18 @@ public class AdminPanel extends JFrame {
 
     private JPanel createActivityPanel() {
         JPanel panel = new JPanel(new BorderLayout());
-        if (darkMode) panel.setBackground(new Color(40, 40, 40));
 
         JPanel topPanel = new JPanel(new BorderLayout());
-        if (darkMode) topPanel.setBackground(new Color(40, 40, 40));
 
         JLabel activityLabel = new JLabel("System Activity Log");
         activityLabel.setFont(new Font("SansSerif", Font.BOLD, 16));
-        if (darkMode) activityLabel.setForeground(Color.WHITE);
+        activityLabel.setForeground(ThemeManager.HEADING);
 
         String[] filterOptions = {"All Activity", "Logins", "Deposits", "Withdrawals", "Alerts Only"};
         JComboBox<String> filterCombo = new JComboBox<>(filterOptions);
         filterCombo.setFont(new Font("SansSerif", Font.PLAIN, 14));
-        if (darkMode) {
-            filterCombo.setBackground(new Color(60, 60, 60));
-            filterCombo.setForeground(Color.WHITE);
-        }
 
         JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        if (darkMode) filterPanel.setBackground(new Color(40, 40, 40));
         filterPanel.add(new JLabel("Filter:"));
         filterPanel.add(filterCombo);
 
@@ -278,19 +308,22 @@ public class AdminPanel extends JFrame {
         activityLog = new JTextArea();
         activityLog.setEditable(false);
         activityLog.setFont(new Font("Monospaced", Font.PLAIN, 14));
-        if (darkMode) {
-            activityLog.setBackground(new Color(60, 60, 60));
-            activityLog.setForeground(Color.WHITE);
-            activityLog.setCaretColor(Color.WHITE);
-        }
 
         activityScrollPane = new JScrollPane(activityLog);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        if (darkMode) buttonPanel.setBackground(new Color(40, 40, 40));
 
         SmoothButton exportButton = new SmoothButton("Export Log", brandBlue, brandBlue, brandBlue.darker(), new Font("SansSerif", Font.BOLD, 14));
         exportButton.addActionListener(e -> exportActivityLog());
+
+        SmoothButton topButton = new SmoothButton("Largest 100 This Week", brandBlue, brandBlue, brandBlue.darker(), new Font("SansSerif", Font.BOLD, 14));
+        topButton.addActionListener(e -> showLargestTransactions((String) filterCombo.getSelectedItem()));
+
+        SmoothButton ledgerButton = new SmoothButton("Export Ledger", brandBlue, brandBlue, brandBlue.darker(), new Font("SansSerif", Font.BOLD, 14));
+        ledgerButton.addActionListener(e -> exportLedger());
+
+        buttonPanel.add(topButton);
+        buttonPanel.add(ledgerButton);
         buttonPanel.add(exportButton);
 
         panel.add(topPanel, BorderLayout.NORTH);
@@ -300,6 +333,49 @@ public class AdminPanel extends JFrame {
         return panel;
     }
 
+    private JPanel createMetricsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        JLabel metricsLabel = new JLabel("Core Operation Metrics");
+        metricsLabel.setFont(new Font("SansSerif", Font.BOLD, 16));
+        metricsLabel.setForeground(ThemeManager.HEADING);
+        metricsLabel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        metricsModel = new MetricsTableModel();
+        JTable metricsTable = new JTable(metricsModel);
+        metricsTable.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        metricsTable.getColumnModel().getColumn(0).setPreferredWidth(260);
+        metricsTable.setFillsViewportHeight(true);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+
+        SmoothButton resetButton = new SmoothButton("Reset", brandBlue, brandBlue, brandBlue.darker(), new Font("SansSerif", Font.BOLD, 14));
+        resetButton.addActionListener(e -> {
+            Metrics.reset();
+            metricsModel.refresh();
+        });
+
+        SmoothButton exportButton = new SmoothButton("Export Snapshot", brandBlue, brandBlue, brandBlue.darker(), new Font("SansSerif", Font.BOLD, 14));
+        exportButton.addActionListener(e -> exportMetrics());
+
+        buttonPanel.add(resetButton);
+        buttonPanel.add(exportButton);
+
+        panel.add(metricsLabel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(metricsTable), BorderLayout.CENTER);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        // Live while the tab is showing; the rate column is measured between ticks
+        metricsTimer = new javax.swing.Timer(METRICS_REFRESH_MILLIS, e -> {
+            if (panel.isShowing()) {
+                metricsModel.refresh();
+            }
+        });
+        metricsTimer.start();
+
+        return panel;
+    }
+
     private JPanel createAlertsPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
@@ -315,7 +391,7 @@ public class AdminPanel extends JFrame {
         JLabel depositLabel = new JLabel("Large Deposit Threshold ($):");
         depositLabel.setFont(labelFont);
 
-        depositField = new JTextField(String.valueOf(LARGE_DEPOSIT_THRESHOLD));
+        depositField = new JTextField(AmountParser.format(Math.round(LARGE_DEPOSIT_THRESHOLD * 100)));
         depositField.setFont(fieldFont);
         // Apply Decimal Filter (Money)
         ((AbstractDocument) depositField.getDocument()).setDocumentFilter(new DecimalInputFilter());
@@ -324,7 +400,7 @@ public class AdminPanel extends JFrame {
         JLabel withdrawalLabel = new JLabel("Large Withdrawal Threshold ($):");
         withdrawalLabel.setFont(labelFont);
 
-        withdrawalField = new JTextField(String.valueOf(LARGE_WITHDRAWAL_THRESHOLD));
+        withdrawalField = new JTextField(AmountParser.format(Math.round(LARGE_WITHDRAWAL_THRESHOLD * 100)));
         withdrawalField.setFont(fieldFont);
         // Apply Decimal Filter (Money)
         ((AbstractDocument) withdrawalField.getDocument()).setDocumentFilter(new DecimalInputFilter());
@@ -347,6 +423,14 @@ public class AdminPanel extends JFrame {
         // Apply Integer Filter (Whole numbers only)
         ((AbstractDocument) timeWindowField.getDocument()).setDocumentFilter(new IntegerInputFilter());
 
+        // -- Adaptive Percentile --
+        JLabel percentileLabel = new JLabel("Adaptive Percentile (0 = off):");
+        percentileLabel.setFont(labelFont);
+
+        percentileField = new JTextField(AmountParser.format(Math.round(ADAPTIVE_PERCENTILE * 100)));
+        percentileField.setFont(fieldFont);
+        ((AbstractDocument) percentileField.getDocument()).setDocumentFilter(new DecimalInputFilter());
+
         // -- Email Notification --
         JLabel emailLabel = new JLabel("Email for Notifications:");
         emailLabel.setFont(labelFont);
@@ -363,6 +447,8 @@ public class AdminPanel extends JFrame {
         settingsPanel.add(freqCountField);
         settingsPanel.add(timeWindowLabel);
         settingsPanel.add(timeWindowField);
+        settingsPanel.add(percentileLabel);
+        settingsPanel.add(percentileField);
         settingsPanel.add(emailLabel);
         settingsPanel.add(emailField);
 
@@ -396,16 +482,23 @@ public class AdminPanel extends JFrame {
                 String withText = withdrawalField.getText().trim();
                 String countText = freqCountField.getText().trim();
                 String hourText = timeWindowField.getText().trim();
+                String percentileText = percentileField.getText().trim();
 
-                if (depText.isEmpty() || withText.isEmpty() || countText.isEmpty() || hourText.isEmpty()) {
+                if (depText.isEmpty() || withText.isEmpty() || countText.isEmpty() || hourText.isEmpty() || percentileText.isEmpty()) {
                     JOptionPane.showMessageDialog(panel, "Fields cannot be empty.", "Invalid Input", JOptionPane.WARNING_MESSAGE);
                     return;
                 }
 
-                LARGE_DEPOSIT_THRESHOLD = Double.parseDouble(depText);
-                LARGE_WITHDRAWAL_THRESHOLD = Double.parseDouble(withText);
+                LARGE_DEPOSIT_THRESHOLD = AmountParser.parseAmount(depText);
+                LARGE_WITHDRAWAL_THRESHOLD = AmountParser.parseAmount(withText);
                 FREQUENT_TRANSACTION_COUNT = Integer.parseInt(countText);
                 FREQUENT_TRANSACTION_HOURS = Integer.parseInt(hourText);
+                double percentile = AmountParser.parseAmount(percentileText);
+                if (percentile < 0 || percentile >= 100) {
+                    JOptionPane.showMessageDialog(panel, "Percentile must be between 0 and 100.", "Invalid Input", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
+                ADAPTIVE_PERCENTILE = percentile;
 
                 saveAlertSettings();
                 JOptionPane.showMessageDialog(panel, "Alert settings saved successfully.", "Settings Saved", JOptionPane.INFORMATION_MESSAGE);
@@ -431,41 +524,24 @@ public class AdminPanel extends JFrame {
         panel.add(centerWrapper, BorderLayout.CENTER);
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
-        // --- 5. Apply Theme ---
-        // This replaces all the manual "if (darkMode) setBackground..." calls
-        ThemeManager.applyTheme(panel, darkMode);
-
         return panel;
     }
 
-    private void updateUserDetails(String username, JTextArea transactionArea, JLabel balanceValue, JLabel transCountValue, JLabel lastLoginValue) {
-        System.out.println("DEBUG: Updating user details for: " + username);
-
-        // Update transaction history
-        transactionArea.setText("");
-        List<TransactionRecord> transactions = allTransactions.getOrDefault(username, new ArrayList<>());
-
-        System.out.println("DEBUG: Found " + transactions.size() + " transactions for " + username);
-
-        if (transactions.isEmpty()) {
-            transactionArea.setText("No transaction history available for this user.");
-        } else {
-            // Transactions sorted newest first; display newest first
-            for (TransactionRecord record : transactions) {
-                transactionArea.append(record.toString() + "\n");
-            }
-        }
+    private void updateUserDetails(String username, HistoryTable transactionTable, JLabel balanceValue, JLabel transCountValue, JLabel lastLoginValue) {
+        // Update transaction history; rows are read from the history file as they scroll into view
+        HistoryIndex index = new HistoryIndex(HistoryStore.fileFor(username));
+        transactionTable.setIndex(index);
 
         // Update user statistics
         double balance = UserManager.getBalance(username);
-        System.out.println("DEBUG: Balance for " + username + ": " + balance);
 
         balanceValue.setText(String.format("$%,.2f", balance));
-        transCountValue.setText(String.valueOf(transactions.size()));
+        transCountValue.setText(String.valueOf(index.size()));
 
-        // Get last activity time
-        if (!transactions.isEmpty()) {
-            TransactionRecord lastTransaction = transactions.get(0); // first is newest
+        // Get last activity time from the end of the history
+        List<String> last = HistoryStore.readLastLines(username, 1);
+        TransactionRecord lastTransaction = last.isEmpty() ? null : TransactionRecord.fromString(last.get(0));
+        if (lastTransaction != null) {
             lastLoginValue.setText(lastTransaction.getTimestamp());
         } else {
             lastLoginValue.setText("No activity");
@@ -485,128 +561,207 @@ public class AdminPanel extends JFrame {
     }
 
     private void loadAllUsers() {
-        System.out.println("DEBUG: Loading all users...");
-
         // Get all users from UserManager
         List<String> users = UserManager.getAllUsers();
-        System.out.println("DEBUG: Found " + users.size() + " users: " + users);
 
-        for (String user : users) {
-            usersModel.addElement(user);
-        }
+        usersModel.setUsers(users);
     }
 
-    private void loadAllTransactions() {
-        System.out.println("DEBUG: Loading all transactions...");
-        allTransactions.clear();
-
-        // Get all users
-        List<String> users = UserManager.getAllUsers();
-        System.out.println("DEBUG: Loading transactions for users: " + users);
-
-        // Load transactions for each user
-        for (String username : users) {
-            List<TransactionRecord> userTransactions = new ArrayList<>();
-
-            File historyFile = new File(username + "_history.txt");
-            System.out.println("DEBUG: Checking for file: " + historyFile.getAbsolutePath() + " - exists: " + historyFile.exists());
-
-            if (historyFile.exists()) {
-                try (BufferedReader reader = new BufferedReader(new FileReader(historyFile))) {
-                    String line;
-                    int lineCount = 0;
-                    while ((line = reader.readLine()) != null) {
-                        lineCount++;
-                        line = line.trim();
-                        if (line.isEmpty()) continue;
-
-                        System.out.println("DEBUG: Parsing line " + lineCount + " for " + username + ": " + line);
-
-                        // Parse transaction record from line
-                        try {
-                            TransactionRecord record = TransactionRecord.fromString(line);
-                            if (record != null) {
-                                userTransactions.add(record);
-                                System.out.println("DEBUG: Successfully parsed: " + record);
-                            } else {
-                                System.out.println("DEBUG: Failed to parse line: " + line);
-                            }
-                        } catch (Exception e) {
-                            System.err.println("DEBUG: Error parsing transaction line '" + line + "': " + e.getMessage());
-                            e.printStackTrace();
-                        }
-                    }
-                    System.out.println("DEBUG: Loaded " + userTransactions.size() + " transactions for " + username);
-                } catch (IOException e) {
-                    System.err.println("Error reading transaction history for " + username + ": " + e.getMessage());
-                    e.printStackTrace();
-                }
-            } else {
-                System.out.println("DEBUG: No history file found for " + username);
-            }
+    private void checkForSuspiciousActivity() {
+        String alertText = analyzeNewTransactions(UserManager.getAllUsers());
 
-            // Sort transactions by timestamp (newest first)
-            userTransactions.sort(Comparator.comparing(TransactionRecord::getTimestampDate).reversed());
+        // Display alerts in activity log
+        if (alertText.length() > 0) {
+            appendToActivityLog("--- SUSPICIOUS ACTIVITY REPORT ---\n" + alertText + "--------------------------------\n\n");
 
-            allTransactions.put(username, userTransactions);
+            // Show notification to admin
+            showAlertNotification(alertText);
         }
-
-        System.out.println("DEBUG: Total transactions loaded: " + allTransactions.size() + " users");
     }
 
-    private void checkForSuspiciousActivity() {
-        StringBuilder alertText = new StringBuilder();
-
-        for (String username : allTransactions.keySet()) {
-            List<TransactionRecord> transactions = allTransactions.get(username);
+    /**
+     * Examines the transactions appended to the users' histories since the last analysis (see AlertStore)
+     * and returns the suspicious activity report for them. Only the new lines are read; the amount
+     * distributions the adaptive rule compares against are updated with them as they go.
+     */
+    static String analyzeNewTransactions(List<String> users) {
+        analysisLock.lock();
+        try {
+            return analyze(users);
+        } finally {
+            analysisLock.unlock();
+        }
+    }
 
-            // Check for large deposits
-            for (TransactionRecord record : transactions) {
+    private static String analyze(List<String> users) {
+        BankEvents.AlertAnalysis event = new BankEvents.AlertAnalysis();
+        event.begin();
+        // New transactions per user, file order, read and sketched in parallel
+        Map<String, List<TransactionRecord>> fresh = new ConcurrentHashMap<>();
+        users.parallelStream().forEach(username -> {
+            AlertStore.UserState state = AlertStore.get(username);
+            List<TransactionRecord> records = new ArrayList<>();
+            long next = HistoryStore.forEachRecordFrom(username, state.getOffset(), records::add);
+            if (next < state.getOffset()) {
+                // The history was replaced; start over on the new one
+                state = AlertStore.reset(username);
+                next = HistoryStore.forEachRecordFrom(username, 0, records::add);
+            }
+            if (next == state.getOffset()) return;
+            for (TransactionRecord record : records) {
+                state.getSketch().add(record.getAmount());
+            }
+            state.setOffset(next);
+            AlertStore.markDirty();
+            if (!records.isEmpty()) {
+                AlertStore.addToBank(records);
+                fresh.put(username, records);
+            }
+        });
+        AmountSketch bankSketch = AlertStore.getBankSketch();
+        double q = ADAPTIVE_PERCENTILE / 100.0;
+        boolean adaptive = ADAPTIVE_PERCENTILE > 0 && bankSketch.getCount() >= ADAPTIVE_MIN_SAMPLES;
+
+        AlertReport report = new AlertReport();
+
+        for (Map.Entry<String, List<TransactionRecord>> entry : fresh.entrySet()) {
+            String username = entry.getKey();
+            List<TransactionRecord> txs = entry.getValue();
+            AmountSketch userSketch = AlertStore.get(username).getSketch();
+            boolean ownHistory = userSketch.getCount() >= ADAPTIVE_MIN_SAMPLES;
+            // Amounts in the quantile's own bucket are not above it; the bound shown is that bucket's top
+            AmountSketch baseline = ownHistory ? userSketch : bankSketch;
+            double adaptiveThreshold = baseline.quantileUpperBound(q);
+
+            for (int i = txs.size() - 1; i >= 0; i--) { // newest first
+                TransactionRecord record = txs.get(i);
+                // Check for large deposits
                 if (record.getType().equals("Deposit") && record.getAmount() >= LARGE_DEPOSIT_THRESHOLD) {
-                    String alert = String.format("ALERT: Large deposit of $%,.2f by %s on %s\n",
-                            record.getAmount(), username, record.getTimestamp());
-                    alertText.append(alert);
+                    report.add(String.format("ALERT: Large deposit of $%,.2f by %s on %s\n",
+                            record.getAmount(), username, record.getTimestamp()));
                 }
-
                 // Check for large withdrawals
-                if (record.getType().equals("Withdrawal") && record.getAmount() >= LARGE_WITHDRAWAL_THRESHOLD) {
-                    String alert = String.format("ALERT: Large withdrawal of $%,.2f by %s on %s\n",
-                            record.getAmount(), username, record.getTimestamp());
-                    alertText.append(alert);
+                else if (record.getType().equals("Withdrawal") && record.getAmount() >= LARGE_WITHDRAWAL_THRESHOLD) {
+                    report.add(String.format("ALERT: Large withdrawal of $%,.2f by %s on %s\n",
+                            record.getAmount(), username, record.getTimestamp()));
+                }
+                // Check against the user's (or the bank's) own amount distribution
+                else if (adaptive && baseline.exceedsQuantile(record.getAmount(), q)) {
+                    report.add(String.format("ALERT: Unusual %s of $%,.2f by %s on %s (above %s p%.1f of $%,.2f)\n",
+                            record.getType().toLowerCase(), record.getAmount(), username, record.getTimestamp(),
+                            ownHistory ? "their" : "bank-wide", ADAPTIVE_PERCENTILE, adaptiveThreshold));
                 }
             }
 
-            // Check for frequent transactions
-            if (transactions.size() >= FREQUENT_TRANSACTION_COUNT) {
-                // Get transactions in the last FREQUENT_TRANSACTION_HOURS
-                LocalDateTime cutoff = LocalDateTime.now().minusHours(FREQUENT_TRANSACTION_HOURS);
-                int recentCount = 0;
+            // Check for frequent transactions, once per analysis that finds new ones keeping the rate up
+            LocalDateTime cutoff = LocalDateTime.now().minusHours(FREQUENT_TRANSACTION_HOURS);
+            int recentCount = countSince(username, cutoff);
+            if (recentCount >= FREQUENT_TRANSACTION_COUNT) {
+                report.add(String.format("ALERT: Frequent activity detected - %d transactions by %s in the last %d hours\n",
+                        recentCount, username, FREQUENT_TRANSACTION_HOURS));
+            }
+        }
+        AlertStore.save();
 
-                for (TransactionRecord record : transactions) {
-                    if (record.getTimestampDate().isAfter(cutoff)) {
-                        recentCount++;
-                    }
-                }
+        event.end();
+        if (event.shouldCommit()) {
+            event.users = users.size();
+            for (List<TransactionRecord> txs : fresh.values()) {
+                event.records += txs.size();
+            }
+            event.alerts = report.count;
+            event.commit();
+        }
+        return report.toString();
+    }
 
-                if (recentCount >= FREQUENT_TRANSACTION_COUNT) {
-                    String alert = String.format("ALERT: Frequent activity detected - %d transactions by %s in the last %d hours\n",
-                            recentCount, username, FREQUENT_TRANSACTION_HOURS);
-                    alertText.append(alert);
-                }
+    // Transactions of the user after the cutoff, counted back from the end of the history
+    private static int countSince(String username, LocalDateTime cutoff) {
+        for (int limit = FREQUENT_TRANSACTION_COUNT * 4; ; limit *= 4) {
+            List<String> lines = HistoryStore.readLastLines(username, limit);
+            int count = 0;
+            for (String line : lines) {
+                TransactionRecord record = TransactionRecord.fromString(line);
+                if (record == null) continue;
+                if (!record.getTimestampDate().isAfter(cutoff)) return count;
+                count++;
             }
+            if (lines.size() < limit) return count;
         }
+    }
 
-        // Display alerts in activity log
-        if (alertText.length() > 0) {
-            activityLog.append("--- SUSPICIOUS ACTIVITY REPORT ---\n");
-            activityLog.append(alertText.toString());
-            activityLog.append("--------------------------------\n\n");
+    // Alert lines for one analysis pass, capped so the log and dialog stay small however many fire
+    private static class AlertReport {
+        private final StringBuilder text = new StringBuilder();
+        private int count = 0;
 
-            // Show notification to admin
-            showAlertNotification(alertText.toString());
+        void add(String line) {
+            if (count++ < MAX_REPORTED_ALERTS) {
+                text.append(line);
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (count > MAX_REPORTED_ALERTS) {
+                return text + String.format("... and %,d more alerts\n", count - MAX_REPORTED_ALERTS);
+            }
+            return text.toString();
         }
     }
 
+    /**
+     * Appends to the activity log, dropping the oldest lines beyond MAX_ACTIVITY_LOG_LINES.
+     */
+    private void appendToActivityLog(String text) {
+        activityLog.append(text);
+        int excess = activityLog.getLineCount() - MAX_ACTIVITY_LOG_LINES;
+        if (excess > 0) {
+            try {
+                activityLog.replaceRange("", 0, activityLog.getLineStartOffset(excess));
+            } catch (javax.swing.text.BadLocationException e) {
+                // Leave the log as is
+            }
+        }
+    }
+
+    private void showLargestTransactions(String filter) {
+        // Deposits/Withdrawals in the activity filter narrow the search; anything else means all types
+        String type = "Deposits".equals(filter) ? "Deposit" : "Withdrawals".equals(filter) ? "Withdrawal" : null;
+        LocalDateTime to = LocalDateTime.now();
+        LocalDateTime from = to.minusDays(7);
+        statusLabel.setText("Scanning histories for the largest transactions...");
+
+        new SwingWorker<List<TopTransactions.Entry>, Void>() {
+            @Override
+            protected List<TopTransactions.Entry> doInBackground() {
+                return TopTransactions.find(100, type, from, to);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    List<TopTransactions.Entry> top = get();
+                    StringBuilder text = new StringBuilder(String.format("\n--- LARGEST %s SINCE %s ---\n",
+                            type == null ? "TRANSACTIONS" : filter.toUpperCase(),
+                            from.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))));
+                    if (top.isEmpty()) {
+                        text.append("No matching transactions.\n");
+                    }
+                    for (TopTransactions.Entry entry : top) {
+                        text.append(entry).append("\n");
+                    }
+                    text.append("--------------------------------\n");
+                    appendToActivityLog(text.toString());
+                    statusLabel.setText("Found " + top.size() + " transactions");
+                } catch (Exception e) {
+                    statusLabel.setText("Error scanning transactions.");
+                    System.err.println("Error finding largest transactions: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
     private void showAlertNotification(String alertText) {
         JDialog alertDialog = new JDialog(this, "Security Alert", true);
         alertDialog.setSize(500, 300);
@@ -614,7 +769,7 @@ public class AdminPanel extends JFrame {
 
         JPanel alertPanel = new JPanel(new BorderLayout());
         alertPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        if (darkMode) {
+        if (ThemeManager.isDarkMode()) {
             alertPanel.setBackground(new Color(50, 0, 0));
         } else {
             alertPanel.setBackground(new Color(255, 240, 240));
@@ -633,7 +788,7 @@ public class AdminPanel extends JFrame {
         JTextArea alertDetails = new JTextArea(alertText);
         alertDetails.setEditable(false);
         alertDetails.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        if (darkMode) {
+        if (ThemeManager.isDarkMode()) {
             alertDetails.setBackground(new Color(60, 20, 20));
             alertDetails.setForeground(Color.WHITE);
         } else {
@@ -644,7 +799,7 @@ public class AdminPanel extends JFrame {
         JScrollPane alertScroll = new JScrollPane(alertDetails);
 
         JPanel northPanel = new JPanel(new BorderLayout());
-        if (darkMode) northPanel.setBackground(new Color(50, 0, 0));
+        if (ThemeManager.isDarkMode()) northPanel.setBackground(new Color(50, 0, 0));
         else northPanel.setBackground(new Color(255, 240, 240));
 
         northPanel.add(alertIcon, BorderLayout.WEST);
@@ -661,6 +816,14 @@ public class AdminPanel extends JFrame {
         alertDialog.setVisible(true);
     }
 
+    private void toggleTheme() {
+        long nanos = ThemeManager.switchAndMeasure(!ThemeManager.isDarkMode());
+        String message = String.format("Switched to %s theme in %.2f ms (including repaint)",
+                ThemeManager.isDarkMode() ? "dark" : "light", nanos / 1_000_000.0);
+        statusLabel.setText(message);
+        appendToActivityLog("[" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "] " + message + "\n");
+    }
+
     private void showTestAlert() {
         String testAlert = "TEST ALERT: This is a test security notification.\n" +
                 "If this were a real alert, details about suspicious transactions would appear here.\n" +
@@ -683,6 +846,7 @@ public class AdminPanel extends JFrame {
             writer.println("LARGE_WITHDRAWAL_THRESHOLD=" + LARGE_WITHDRAWAL_THRESHOLD);
             writer.println("FREQUENT_TRANSACTION_COUNT=" + FREQUENT_TRANSACTION_COUNT);
             writer.println("FREQUENT_TRANSACTION_HOURS=" + FREQUENT_TRANSACTION_HOURS);
+            writer.println("ADAPTIVE_PERCENTILE=" + ADAPTIVE_PERCENTILE);
         } catch (IOException e) {
             System.err.println("Error saving alert settings: " + e.getMessage());
         }
@@ -709,6 +873,9 @@ public class AdminPanel extends JFrame {
                             case "FREQUENT_TRANSACTION_HOURS":
                                 FREQUENT_TRANSACTION_HOURS = Integer.parseInt(parts[1]);
                                 break;
+                            case "ADAPTIVE_PERCENTILE":
+                                ADAPTIVE_PERCENTILE = Double.parseDouble(parts[1]);
+                                break;
                         }
                     }
                 }
@@ -755,120 +922,223 @@ public class AdminPanel extends JFrame {
         }
     }
 
-    private void applyDarkMode(Container container) {
-        container.setBackground(new Color(40, 40, 40));
-        container.setForeground(Color.WHITE);
-
-        for (Component comp : container.getComponents()) {
-            if (comp instanceof JPanel) {
-                comp.setBackground(new Color(40, 40, 40));
-                comp.setForeground(Color.WHITE);
-                applyDarkMode((Container) comp);
-            } else if (comp instanceof JLabel) {
-                comp.setForeground(Color.WHITE);
-            } else if (comp instanceof JTextArea || comp instanceof JTextField) {
-                comp.setBackground(new Color(60, 60, 60));
-                comp.setForeground(Color.WHITE);
-                if (comp instanceof JTextArea) {
-                    ((JTextArea) comp).setCaretColor(Color.WHITE);
-                } else if (comp instanceof JTextField) {
-                    ((JTextField) comp).setCaretColor(Color.WHITE);
-                }
-            } else if (comp instanceof JScrollPane) {
-                JScrollPane scrollPane = (JScrollPane) comp;
-                Component viewportView = scrollPane.getViewport().getView();
-                if (viewportView instanceof JTextArea) {
-                    viewportView.setBackground(new Color(60, 60, 60));
-                    viewportView.setForeground(Color.WHITE);
-                } else if (viewportView instanceof JList) {
-                    viewportView.setBackground(new Color(60, 60, 60));
-                    viewportView.setForeground(Color.WHITE);
+    private void exportMetrics() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export Metrics Snapshot");
+
+        File dataDir = new File("data");
+        if (!dataDir.exists()) {
+            dataDir.mkdir();
+        }
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        fileChooser.setSelectedFile(new File(dataDir, "FancyBank_Metrics_" + timestamp + ".txt"));
+
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            try (PrintWriter writer = new PrintWriter(file)) {
+                writer.print(Metrics.snapshot());
+                statusLabel.setText("Metrics snapshot exported to " + file.getName());
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this,
+                        "Error exporting metrics: " + e.getMessage(),
+                        "Export Failed", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (metricsTimer != null) {
+            metricsTimer.stop();
+        }
+        if (transactionTable != null) {
+            transactionTable.setIndex(null); // closes the history file it was reading
+        }
+        super.dispose();
+    }
+
+    private void exportLedger() {
+        // Which records: user, type and time range
+        JTextField userField = new JTextField(usersList.getSelectedValue() == null ? "" : usersList.getSelectedValue());
+        JComboBox<String> typeCombo = new JComboBox<>(new String[]{"All Types", "Deposit", "Withdrawal"});
+        String[] rangeNames = {"All Time", "Last 24 Hours", "Last 7 Days", "Last 30 Days", "Last 12 Months"};
+        long[] rangeHours = {0, 24, 24 * 7, 24 * 30, 24 * 365};
+        JComboBox<String> rangeCombo = new JComboBox<>(rangeNames);
+        JPanel options = new JPanel(new GridLayout(0, 2, 10, 5));
+        options.add(new JLabel("User (blank for all):"));
+        options.add(userField);
+        options.add(new JLabel("Type:"));
+        options.add(typeCombo);
+        options.add(new JLabel("Time Range:"));
+        options.add(rangeCombo);
+        if (JOptionPane.showConfirmDialog(this, options, "Export Ledger", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        String user = userField.getText().trim();
+        if (!user.isEmpty() && !UserManager.userExists(user)) {
+            JOptionPane.showMessageDialog(this, "No such user: " + user, "Export Ledger", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        String type = typeCombo.getSelectedIndex() == 0 ? null : (String) typeCombo.getSelectedItem();
+        long hours = rangeHours[rangeCombo.getSelectedIndex()];
+        LedgerExporter.Filter filter = new LedgerExporter.Filter(user.isEmpty() ? null : user, type,
+                hours == 0 ? null : LocalDateTime.now().minusHours(hours), null);
+
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export Ledger");
+        javax.swing.filechooser.FileNameExtensionFilter csv = new javax.swing.filechooser.FileNameExtensionFilter("CSV (*.csv)", "csv");
+        javax.swing.filechooser.FileNameExtensionFilter jsonl = new javax.swing.filechooser.FileNameExtensionFilter("JSON Lines (*.jsonl)", "jsonl");
+        fileChooser.addChoosableFileFilter(csv);
+        fileChooser.addChoosableFileFilter(jsonl);
+        fileChooser.setFileFilter(csv);
+        File dataDir = new File("data");
+        if (!dataDir.exists()) {
+            dataDir.mkdir();
+        }
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        fileChooser.setSelectedFile(new File(dataDir, "FancyBank_Ledger_" + timestamp + ".csv"));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        File file = fileChooser.getSelectedFile();
+        LedgerExporter.Format format = file.getName().endsWith(".jsonl") || fileChooser.getFileFilter() == jsonl
+                ? LedgerExporter.Format.JSON_LINES : LedgerExporter.Format.CSV;
+        ProgressMonitor monitor = new ProgressMonitor(this, "Exporting ledger to " + file.getName(), "", 0, 1000);
+        monitor.setMillisToDecideToPopup(200);
+
+        new SwingWorker<LedgerExporter.Result, Void>() {
+            @Override
+            protected LedgerExporter.Result doInBackground() throws Exception {
+                return LedgerExporter.export(file, format, filter, (read, total) -> {
+                    setProgress(total == 0 ? 100 : (int) (read * 100 / total));
+                    return !monitor.isCanceled();
+                });
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    LedgerExporter.Result result = get();
+                    String message = result.isCancelled()
+                            ? "Ledger export cancelled."
+                            : String.format("Exported %,d transactions (%,d bytes) to %s", result.getRows(),
+                            result.getBytesWritten(), file.getAbsolutePath())
+                            + (result.getSkipped() > 0
+                                ? String.format("\n%,d unreadable history lines were skipped.", result.getSkipped())
+                                : "");
+                    statusLabel.setText(result.isCancelled() ? message : "Exported " + result.getRows() + " transactions");
+                    JOptionPane.showMessageDialog(AdminPanel.this, message, "Export Ledger", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    System.err.println("Error exporting ledger: " + e.getMessage());
+                    JOptionPane.showMessageDialog(AdminPanel.this, "Error exporting ledger: " + e.getMessage(),
+                            "Export Failed", JOptionPane.ERROR_MESSAGE);
                 }
             }
+
+            {
+                addPropertyChangeListener(event -> {
+                    if ("progress".equals(event.getPropertyName())) {
+                        int percent = (Integer) event.getNewValue();
+                        monitor.setProgress(percent * 10);
+                        monitor.setNote(percent + "% of history read");
+                    }
+                });
+            }
+        }.execute();
+    }
+
+    // One row per timer, then one per counter; rates are taken between refreshes
+    private static class MetricsTableModel extends javax.swing.table.AbstractTableModel {
+        private static final String[] COLUMNS = {"Operation", "Count", "Ops/s", "Mean ms", "p50 ms", "p99 ms", "p999 ms", "Max ms"};
+        private final List<Object[]> rows = new ArrayList<>();
+        private final Map<String, Long> previousCounts = new HashMap<>();
+        private long previousNanos = System.nanoTime();
+
+        MetricsTableModel() {
+            refresh();
+        }
+
+        void refresh() {
+            long now = System.nanoTime();
+            double seconds = (now - previousNanos) / 1e9;
+            previousNanos = now;
+            rows.clear();
+            for (String name : Metrics.timerNames()) {
+                LatencyHistogram h = Metrics.timer(name);
+                long count = h.getCount();
+                long delta = Math.max(0, count - previousCounts.getOrDefault(name, count));
+                previousCounts.put(name, count);
+                rows.add(new Object[]{name, count, rate(delta, seconds), millis(h.getMeanNanos()),
+                        millis(h.quantileNanos(0.5)), millis(h.quantileNanos(0.99)), millis(h.quantileNanos(0.999)),
+                        millis(h.getMaxNanos())});
+            }
+            for (String name : Metrics.counterNames()) {
+                long count = Metrics.counter(name).sum();
+                long delta = Math.max(0, count - previousCounts.getOrDefault(name, count));
+                previousCounts.put(name, count);
+                rows.add(new Object[]{name, count, rate(delta, seconds), "", "", "", "", ""});
+            }
+            fireTableDataChanged();
+        }
+
+        private static String rate(long delta, double seconds) {
+            return seconds > 0 ? String.format("%.1f", delta / seconds) : "";
+        }
+
+        private static String millis(double nanos) {
+            return String.format("%.3f", nanos / 1e6);
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows.get(row)[column];
         }
     }
 
-    //
     private class DataRefreshWorker extends SwingWorker<DataRefreshWorker.RefreshResult, String> {
 
         // Container for the data we collect in the background
         class RefreshResult {
             List<String> users;
-            Map<String, List<TransactionRecord>> transactions;
             String alertReport;
 
-            RefreshResult(List<String> users, Map<String, List<TransactionRecord>> transactions, String alertReport) {
+            RefreshResult(List<String> users, String alertReport) {
                 this.users = users;
-                this.transactions = transactions;
                 this.alertReport = alertReport;
             }
         }
 
         @Override
         protected RefreshResult doInBackground() throws Exception {
+            long start = System.nanoTime();
             publish("Fetching user list...");
             List<String> loadedUsers = UserManager.getAllUsers();
 
-            publish("Loading transaction histories...");
-            Map<String, List<TransactionRecord>> loadedTransactions = new HashMap<>();
-
-            // Load transactions for each user (previously done on UI thread)
-            int progress = 0;
-            for (String username : loadedUsers) {
-                publish("Processing data for: " + username);
-                List<TransactionRecord> userTransactions = new ArrayList<>();
-                File historyFile = new File(username + "_history.txt");
-
-                if (historyFile.exists()) {
-                    try (BufferedReader reader = new BufferedReader(new FileReader(historyFile))) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            if (line.trim().isEmpty()) continue;
-                            TransactionRecord record = TransactionRecord.fromString(line);
-                            if (record != null) {
-                                userTransactions.add(record);
-                            }
-                        }
-                    }
-                }
-                // Sort: newest first
-                userTransactions.sort(Comparator.comparing(TransactionRecord::getTimestampDate).reversed());
-                loadedTransactions.put(username, userTransactions);
-
-                // Artificial delay to demonstrate responsiveness (remove in production)
-                // Thread.sleep(50);
-            }
+            // Only what was appended to each history since the last refresh is read
+            publish("Analyzing new transactions...");
+            String alertText = analyzeNewTransactions(loadedUsers);
 
-            publish("Analyzing for suspicious activity...");
-            // Re-implement the check logic here to run in background
-            StringBuilder alertText = new StringBuilder();
-            // (Logic adapted from your original checkForSuspiciousActivity method)
-            for (String username : loadedTransactions.keySet()) {
-                List<TransactionRecord> txs = loadedTransactions.get(username);
-
-                // Check thresholds (using the static variables from AdminPanel)
-                for (TransactionRecord record : txs) {
-                    if (record.getType().equals("Deposit") && record.getAmount() >= LARGE_DEPOSIT_THRESHOLD) {
-                        alertText.append(String.format("ALERT: Large deposit of $%,.2f by %s on %s\n",
-                                record.getAmount(), username, record.getTimestamp()));
-                    }
-                    if (record.getType().equals("Withdrawal") && record.getAmount() >= LARGE_WITHDRAWAL_THRESHOLD) {
-                        alertText.append(String.format("ALERT: Large withdrawal of $%,.2f by %s on %s\n",
-                                record.getAmount(), username, record.getTimestamp()));
-                    }
-                }
-                // Check frequency logic...
-                if (txs.size() >= FREQUENT_TRANSACTION_COUNT) {
-                    LocalDateTime cutoff = LocalDateTime.now().minusHours(FREQUENT_TRANSACTION_HOURS);
-                    long recentCount = txs.stream().filter(r -> r.getTimestampDate().isAfter(cutoff)).count();
-                    if (recentCount >= FREQUENT_TRANSACTION_COUNT) {
-                        alertText.append(String.format("ALERT: Frequent activity detected - %d transactions by %s in last %d hours\n",
-                                recentCount, username, FREQUENT_TRANSACTION_HOURS));
-                    }
-                }
-            }
-
-            return new RefreshResult(loadedUsers, loadedTransactions, alertText.toString());
+            refreshTimer.record(System.nanoTime() - start);
+            return new RefreshResult(loadedUsers, alertText);
         }
 
         @Override
@@ -885,22 +1155,18 @@ public class AdminPanel extends JFrame {
                 RefreshResult result = get();
 
                 // 1. Update Users List
-                usersModel.clear();
-                for (String user : result.users) {
-                    usersModel.addElement(user);
-                }
-
-                // 2. Update Transactions Map
-                allTransactions = result.transactions;
+                usersList.clearSelection();
+                usersModel.setUsers(result.users);
 
-                // 3. Handle Alerts
+                // 2. Handle Alerts
                 if (result.alertReport.length() > 0) {
-                    activityLog.append("\n--- SUSPICIOUS ACTIVITY REPORT ---\n");
-                    activityLog.append(result.alertReport);
-                    activityLog.append("--------------------------------\n");
+                    appendToActivityLog("\n--- SUSPICIOUS ACTIVITY REPORT ---\n" + result.alertReport + "--------------------------------\n");
                     showAlertNotification(result.alertReport);
                 }
 
+                // 3. Rollups are maintained as transactions are logged; just redraw
+                volumeChart.reload();
+
                 // 4. UI Finalization
                 statusLabel.setText("Data refreshed at " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")));
                 refreshButton.setEnabled(true); // Re-enable the button
@@ -915,4 +1181,110 @@ public class AdminPanel extends JFrame {
             }
         }
     }
-}
\ No newline at end of file
+}
+
+class VolumeChart extends JPanel {
+    static final String[] RANGE_NAMES = {"Last 24 Hours", "Last 30 Days", "Last 12 Months"};
+    private static final int[] RANGE_BUCKETS = {24, 30, 12};
+    private static final int[] RANGE_BUCKET_HOURS = {1, 24, 24 * 30};
+
+    private final Color inflowColor = new Color(0, 102, 204);
+    private final Color outflowColor = new Color(204, 153, 0);
+    private String key = RollupStore.BANK_KEY;
+    private int range = 1;
+    private List<RollupStore.Bucket> buckets = new ArrayList<>();
+
+    public VolumeChart() {
+        reload();
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+        reload();
+    }
+
+    public void setRange(int range) {
+        this.range = range;
+        reload();
+    }
+
+    public void reload() {
+        LocalDateTime end = range == 0
+                ? LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusHours(1)
+                : LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).plusDays(1);
+        int bucketHours = RANGE_BUCKET_HOURS[range];
+        LocalDateTime start = end.minusHours((long) RANGE_BUCKETS[range] * bucketHours);
+        try {
+            buckets = RollupStore.query(key, start, end, bucketHours);
+        } catch (UncheckedIOException e) {
+            System.err.println("Could not load transaction volumes: " + e.getMessage());
+            buckets = new ArrayList<>();
+        }
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int w = getWidth();
+        int h = getHeight();
+        int padding = 10;
+        int labelHeight = 14;
+
+        g2.setColor(ThemeManager.isDarkMode() ? new Color(30, 30, 30) : Color.WHITE);
+        g2.fillRect(0, 0, w, h);
+        if (buckets.isEmpty()) return;
+        BankEvents.ChartRender event = new BankEvents.ChartRender();
+        event.begin();
+
+        double maxFlow = 0;
+        double totalIn = 0;
+        double totalOut = 0;
+        long totalCount = 0;
+        for (RollupStore.Bucket bucket : buckets) {
+            maxFlow = Math.max(maxFlow, Math.max(bucket.getInflow(), bucket.getOutflow()));
+            totalIn += bucket.getInflow();
+            totalOut += bucket.getOutflow();
+            totalCount += bucket.getCount();
+        }
+        if (maxFlow == 0) maxFlow = 1;
+
+        // Inflow bars rise from the middle axis, outflow bars hang below it
+        int top = padding + labelHeight;
+        int baseline = top + (h - top - padding) / 2;
+        double halfHeight = (h - top - padding) / 2.0;
+        double slot = (double) (w - 2 * padding) / buckets.size();
+        int barWidth = Math.max(1, (int) (slot * 0.8));
+
+        for (int i = 0; i < buckets.size(); i++) {
+            RollupStore.Bucket bucket = buckets.get(i);
+            int x = padding + (int) (i * slot);
+            int up = (int) (bucket.getInflow() / maxFlow * halfHeight);
+            int down = (int) (bucket.getOutflow() / maxFlow * halfHeight);
+            g2.setColor(inflowColor);
+            g2.fillRect(x, baseline - up, barWidth, up);
+            g2.setColor(outflowColor);
+            g2.fillRect(x, baseline, barWidth, down);
+        }
+
+        g2.setColor(ThemeManager.isDarkMode() ? Color.LIGHT_GRAY : Color.DARK_GRAY);
+        g2.drawLine(padding, baseline, w - padding, baseline);
+        g2.setFont(new Font("SansSerif", Font.PLAIN, 10));
+        String who = key.equals(RollupStore.BANK_KEY) ? "Bank-wide" : key;
+        g2.drawString(String.format("%s: %,d txns | In $%,.2f | Out $%,.2f", who, totalCount, totalIn, totalOut),
+                padding, padding + 10);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.chart = "volume " + who;
+            event.points = buckets.size();
+            event.width = w;
+            event.height = h;
+            event.mode = "full";
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persisted progress of alert analysis. For each user it keeps how many bytes of the history have been
+ * examined and a sketch of every amount examined so far, so a refresh reads only the lines appended since
+ * and a transaction never raises the same alert twice. A bank-wide sketch of all those amounts is kept
+ * alongside and updated with the same transactions.
+ */
+public class AlertStore {
+    private static final String DATA_FILE = "data/alert_state.dat";
+
+    /**
+     * How far one user's history has been analyzed. Changed only by the analysis, one user per thread.
+     */
+    public static class UserState implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long offset;
+        private final AmountSketch sketch = new AmountSketch();
+
+        /**
+         * Bytes of the history examined; the next analysis starts reading here.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        public void setOffset(long offset) {
+            this.offset = offset;
+        }
+
+        /**
+         * Amounts of every transaction examined so far.
+         */
+        public AmountSketch getSketch() {
+            return sketch;
+        }
+    }
+
+    private static Map<String, UserState> states = new HashMap<>();
+    private static AmountSketch bankSketch = new AmountSketch();
+    // Set when a user's state was discarded; the bank-wide sketch is then merged afresh from the users'
+    private static boolean bankStale = false;
+    private static boolean dirty = false;
+
+    static {
+        loadFromFile();
+    }
+
+    /**
+     * Returns the user's analysis state, creating an empty one for a user not analyzed before.
+     */
+    public static synchronized UserState get(String username) {
+        return states.computeIfAbsent(username, key -> new UserState());
+    }
+
+    /**
+     * Discards the user's state, for a history that was replaced, and returns a fresh one.
+     */
+    public static synchronized UserState reset(String username) {
+        UserState state = new UserState();
+        states.put(username, state);
+        bankStale = true;
+        dirty = true;
+        return state;
+    }
+
+    /**
+     * Adds newly examined amounts to the bank-wide sketch.
+     */
+    public static synchronized void addToBank(List<TransactionRecord> records) {
+        for (TransactionRecord record : records) {
+            bankSketch.add(record.getAmount());
+        }
+        dirty = true;
+    }
+
+    /**
+     * Returns the sketch of every amount examined for any user. Call once the users' states are up to date.
+     */
+    public static synchronized AmountSketch getBankSketch() {
+        if (bankStale) {
+            bankSketch = new AmountSketch();
+            for (UserState state : states.values()) {
+                bankSketch.merge(state.sketch);
+            }
+            bankStale = false;
+        }
+        return bankSketch;
+    }
+
+    public static synchronized void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Writes the state to disk if it changed since the last save.
+     */
+    public static synchronized void save() {
+        if (!dirty) return;
+        File dir = new File("data");
+        if (!dir.exists()) {
+            dir.mkdir();
+        }
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(DATA_FILE)))) {
+            oos.writeObject(states);
+            oos.writeObject(getBankSketch());
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("Error saving alert state: " + e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void loadFromFile() {
+        File file = new File(DATA_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Object obj = ois.readObject();
+            if (obj instanceof Map) {
+                states = (Map<String, UserState>) obj;
+                bankSketch = (AmountSketch) ois.readObject();
+            } else {
+                System.err.println("Invalid alert state format. Histories will be analyzed again.");
+            }
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            System.err.println("Error loading alert state: " + e.getMessage());
+            bankStale = true;
+        }
+    }
+}
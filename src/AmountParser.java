@@ -0,0 +1,149 @@
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Validates and parses money typed by the user straight into whole cents, without building strings
+ * or regexes. Uses the default locale's decimal and grouping separators; grouping is optional,
+ * but where it is used every group after the first must have three digits.
+ */
+public class AmountParser {
+    /** Returned by parseCents for anything that is not a complete, valid amount. */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    // Keeps cents well inside the range doubles represent exactly
+    private static final int MAX_INTEGER_DIGITS = 13;
+    private static final int MAX_FRACTION_DIGITS = 2;
+
+    private static final char DECIMAL;
+    private static final char GROUPING;
+
+    static {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+        DECIMAL = symbols.getDecimalSeparator();
+        GROUPING = symbols.getGroupingSeparator();
+    }
+
+    /**
+     * Returns true if replacing [offset, offset + removed) of current with inserted leaves text that is
+     * still an amount being typed ("", "-", "12.", "1,234.5"). current is read in place, e.g. a Segment.
+     */
+    public static boolean isValidEdit(CharSequence current, int offset, int removed, CharSequence inserted) {
+        int insertedLength = inserted == null ? 0 : inserted.length();
+        int length = current.length() - removed + insertedLength;
+        int integerDigits = 0;
+        int fractionDigits = 0;
+        boolean decimal = false;
+        char previous = 0;
+        for (int i = 0; i < length; i++) {
+            char c = i < offset ? current.charAt(i)
+                    : i < offset + insertedLength ? inserted.charAt(i - offset)
+                    : current.charAt(i - insertedLength + removed);
+            if (c >= '0' && c <= '9') {
+                if (decimal) {
+                    if (++fractionDigits > MAX_FRACTION_DIGITS) return false;
+                } else if (++integerDigits > MAX_INTEGER_DIGITS) {
+                    return false;
+                }
+            } else if (c == '-') {
+                if (i != 0) return false;
+            } else if (c == DECIMAL) {
+                if (decimal) return false;
+                decimal = true;
+            } else if (isGrouping(c, GROUPING)) {
+                // Only between integer digits
+                if (decimal || previous < '0' || previous > '9') return false;
+            } else {
+                return false;
+            }
+            previous = c;
+        }
+        return true;
+    }
+
+    /**
+     * Parses a complete amount into cents, ignoring surrounding whitespace. Returns INVALID if the text
+     * is blank, malformed, has more than two decimals or is too large.
+     */
+    public static long parseCents(CharSequence text) {
+        return parseCents(text, DECIMAL, GROUPING);
+    }
+
+    /**
+     * Like parseCents(text), with explicit separators, e.g. '.' and none (0) for machine-written files.
+     */
+    public static long parseCents(CharSequence text, char decimalSeparator, char groupingSeparator) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+        if (start == end) return INVALID;
+
+        boolean negative = text.charAt(start) == '-';
+        if (negative) start++;
+
+        long units = 0;
+        long cents = 0;
+        int integerDigits = 0;
+        int fractionDigits = 0;
+        int groupDigits = -1; // digits since the last grouping separator, -1 before the first one
+        boolean decimal = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (decimal) {
+                    if (++fractionDigits > MAX_FRACTION_DIGITS) return INVALID;
+                    cents = cents * 10 + (c - '0');
+                } else {
+                    if (++integerDigits > MAX_INTEGER_DIGITS) return INVALID;
+                    units = units * 10 + (c - '0');
+                    if (groupDigits >= 0) groupDigits++;
+                }
+            } else if (c == decimalSeparator && !decimal) {
+                if (groupDigits >= 0 && groupDigits != 3) return INVALID;
+                decimal = true;
+            } else if (groupingSeparator != 0 && isGrouping(c, groupingSeparator) && !decimal && integerDigits > 0) {
+                if (groupDigits >= 0 && groupDigits != 3) return INVALID;
+                if (groupDigits < 0 && integerDigits > 3) return INVALID;
+                groupDigits = 0;
+            } else {
+                return INVALID;
+            }
+        }
+        if (integerDigits + fractionDigits == 0) return INVALID;
+        if (!decimal && groupDigits >= 0 && groupDigits != 3) return INVALID;
+        if (fractionDigits == 1) cents *= 10;
+
+        long total = units * 100 + cents;
+        return negative ? -total : total;
+    }
+
+    /**
+     * Parses a complete amount into dollars, for callers that work in doubles.
+     */
+    public static double parseAmount(CharSequence text) {
+        long cents = parseCents(text);
+        if (cents == INVALID) {
+            throw new NumberFormatException("Not a valid amount: " + text);
+        }
+        return cents / 100.0;
+    }
+
+    /**
+     * Formats cents with two decimals and the locale's decimal separator, without grouping,
+     * so the result is accepted back by the input filter and parseCents.
+     */
+    public static String format(long cents) {
+        long abs = Math.abs(cents);
+        StringBuilder builder = new StringBuilder(20);
+        if (cents < 0) builder.append('-');
+        builder.append(abs / 100).append(DECIMAL);
+        long fraction = abs % 100;
+        if (fraction < 10) builder.append('0');
+        return builder.append(fraction).toString();
+    }
+
+    private static boolean isGrouping(char c, char grouping) {
+        // Locales grouping with (narrow) no-break spaces also accept a typed plain space
+        return c == grouping || (c == ' ' && (grouping == '\u00a0' || grouping == '\u202f'));
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Streaming quantile sketch of transaction amounts with about 1% relative error.
+ * Amounts are counted in logarithmic buckets, so add() is O(1), memory is bounded by MAX_BUCKETS,
+ * and two sketches merge by adding their bucket counts. Only non-empty buckets are serialized.
+ */
+public class AmountSketch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final int MAX_BUCKETS = 2048;
+    // Amounts below one cent share a single bucket
+    private static final double MIN_AMOUNT = 0.01;
+    private static final int ZERO_BUCKET = Integer.MIN_VALUE;
+
+    private transient long[] counts = new long[0];
+    private int offset; // bucket index of counts[0]
+    private long zeroCount;
+    private long total;
+
+    public void add(double amount) {
+        total++;
+        if (amount < MIN_AMOUNT) {
+            zeroCount++;
+            return;
+        }
+        int index = bucketIndex(amount);
+        ensureCovers(index, index);
+        counts[Math.max(0, index - offset)]++;
+    }
+
+    /**
+     * Adds the other sketch's counts into this one and returns this sketch.
+     */
+    public AmountSketch merge(AmountSketch other) {
+        if (other.total == 0) return this;
+        zeroCount += other.zeroCount;
+        total += other.total;
+        if (other.counts.length == 0) return this;
+
+        ensureCovers(other.offset, other.offset + other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[Math.max(0, other.offset + i - offset)] += other.counts[i];
+        }
+        return this;
+    }
+
+    /**
+     * Returns the approximate amount at quantile q (0..1), or 0 for an empty sketch.
+     */
+    public double quantile(double q) {
+        int bucket = quantileBucket(q);
+        return bucket == ZERO_BUCKET ? 0 : 2 * Math.pow(GAMMA, bucket) / (GAMMA + 1);
+    }
+
+    /**
+     * Returns the largest amount that falls in the same bucket as quantile q, or 0 for an empty sketch.
+     * Anything above it is above the quantile by more than the sketch's error.
+     */
+    public double quantileUpperBound(double q) {
+        int bucket = quantileBucket(q);
+        return bucket == ZERO_BUCKET ? (total == 0 ? 0 : MIN_AMOUNT) : Math.pow(GAMMA, bucket);
+    }
+
+    /**
+     * True if the amount falls in a higher bucket than quantile q. Comparing buckets rather than the quantile's
+     * estimate keeps amounts equal to the quantile from counting as above it.
+     */
+    public boolean exceedsQuantile(double amount, double q) {
+        if (total == 0 || amount < MIN_AMOUNT) return false;
+        return bucketIndex(amount) > quantileBucket(q);
+    }
+
+    // Bucket index holding the value at quantile q, or ZERO_BUCKET for amounts below MIN_AMOUNT and empty sketches
+    private int quantileBucket(double q) {
+        if (total == 0) return ZERO_BUCKET;
+        long rank = (long) Math.floor(Math.max(0, Math.min(1, q)) * (total - 1));
+        long seen = zeroCount;
+        if (rank < seen) return ZERO_BUCKET;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                return offset + i;
+            }
+        }
+        return offset + counts.length - 1;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        int used = 0;
+        for (long count : counts) {
+            if (count != 0) used++;
+        }
+        out.writeInt(used);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                out.writeInt(offset + i);
+                out.writeLong(counts[i]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        counts = new long[0];
+        int used = in.readInt();
+        for (int i = 0; i < used; i++) {
+            int index = in.readInt();
+            long count = in.readLong();
+            ensureCovers(index, index);
+            counts[Math.max(0, index - offset)] += count;
+        }
+    }
+
+    private static int bucketIndex(double amount) {
+        return (int) Math.ceil(Math.log(amount) / LOG_GAMMA);
+    }
+
+    private void ensureCovers(int low, int high) {
+        if (counts.length == 0) {
+            counts = new long[Math.min(MAX_BUCKETS, Math.max(16, high - low + 1))];
+            offset = low;
+        }
+        int currentHigh = offset + counts.length - 1;
+        if (low >= offset && high <= currentHigh) return;
+
+        int newLow = Math.min(low, offset);
+        int newHigh = Math.max(high, currentHigh);
+        int needed = newHigh - newLow + 1;
+        // Grow with headroom so repeated extensions stay amortized O(1)
+        int length = Math.min(MAX_BUCKETS, Math.max(needed, counts.length * 2));
+        if (needed > length || low < offset) {
+            // Anchor at the top; past the bound the smallest amounts fold into the lowest bucket
+            newLow = newHigh - length + 1;
+        }
+
+        long[] resized = new long[length];
+        for (int i = 0; i < counts.length; i++) {
+            resized[Math.max(0, offset + i - newLow)] += counts[i];
+        }
+        counts = resized;
+        offset = newLow;
+    }
+}
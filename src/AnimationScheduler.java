@@ -0,0 +1,70 @@
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One frame-paced Swing timer shared by every running animation. The timer only runs while
+ * at least one animation is active, and animations are driven by elapsed time rather than tick count.
+ */
+public class AnimationScheduler {
+    private static final int FRAME_MILLIS = 16;
+
+    private static final List<Animation> active = new ArrayList<>();
+    private static final Timer timer = new Timer(FRAME_MILLIS, e -> tick());
+
+    /**
+     * A running animation. Called on the Event Dispatch Thread once per frame.
+     */
+    public interface Animation {
+        /**
+         * Advances to the given time (System.nanoTime()) and returns true once finished.
+         */
+        boolean step(long now);
+    }
+
+    /**
+     * Schedules the animation if it is not already running. Must be called on the Event Dispatch Thread.
+     */
+    public static void start(Animation animation) {
+        if (!active.contains(animation)) {
+            active.add(animation);
+        }
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    public static void cancel(Animation animation) {
+        active.remove(animation);
+        if (active.isEmpty()) {
+            timer.stop();
+        }
+    }
+
+    public static int activeCount() {
+        return active.size();
+    }
+
+    private static void tick() {
+        long now = System.nanoTime();
+        // Backwards, so finished animations can be removed in place
+        for (int i = active.size() - 1; i >= 0; i--) {
+            if (active.get(i).step(now)) {
+                active.remove(i);
+            }
+        }
+        if (active.isEmpty()) {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Cubic ease-out: fast start, gentle settle. t is clamped to [0, 1].
+     */
+    public static double easeOut(double t) {
+        if (t <= 0) return 0;
+        if (t >= 1) return 1;
+        double inverse = 1 - t;
+        return 1 - inverse * inverse * inverse;
+    }
+}
@@ -0,0 +1,167 @@
+import java.io.*;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Replays every user's history file in parallel and compares the derived balance with the stored one.
+ * The history is treated as the ledger of record: repair sets the stored balance to the replayed one.
+ * Accounts without any history records are reported but never repaired, since there is nothing to replay.
+ */
+public class BalanceReconciler {
+    private static final double TOLERANCE = 0.005;
+
+    public static class Drift {
+        private final String username;
+        private final double storedBalance;
+        private final double replayedBalance;
+        private final double ledgerBalance; // last "Balance:" column, NaN without history
+        private final int records;
+
+        Drift(String username, double storedBalance, double replayedBalance, double ledgerBalance, int records) {
+            this.username = username;
+            this.storedBalance = storedBalance;
+            this.replayedBalance = replayedBalance;
+            this.ledgerBalance = ledgerBalance;
+            this.records = records;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public double getStoredBalance() {
+            return storedBalance;
+        }
+
+        public double getReplayedBalance() {
+            return replayedBalance;
+        }
+
+        public boolean isRepairable() {
+            return records > 0;
+        }
+
+        @Override
+        public String toString() {
+            String ledger = Double.isNaN(ledgerBalance) ? "n/a" : String.format("$%,.2f", ledgerBalance);
+            if (!isRepairable()) {
+                return String.format("%s: stored $%,.2f, no history records to replay", username, storedBalance);
+            }
+            return String.format("%s: stored $%,.2f, replayed $%,.2f (%d records, last ledger balance %s)",
+                    username, storedBalance, replayedBalance, records, ledger);
+        }
+    }
+
+    public static class Report {
+        private final int usersChecked;
+        private final List<Drift> drifts;
+        private final long elapsedMillis;
+        private final boolean repaired;
+
+        Report(int usersChecked, List<Drift> drifts, long elapsedMillis, boolean repaired) {
+            this.usersChecked = usersChecked;
+            this.drifts = drifts;
+            this.elapsedMillis = elapsedMillis;
+            this.repaired = repaired;
+        }
+
+        public List<Drift> getDrifts() {
+            return drifts;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Balance reconciliation: %d users checked in %d ms, %d drifted%s%n",
+                    usersChecked, elapsedMillis, drifts.size(), repaired ? ", repairable ones repaired" : ""));
+            for (Drift drift : drifts) {
+                sb.append("  ").append(drift).append(System.lineSeparator());
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Checks every account; with repair, drifted balances are reset to the replayed ledger balance.
+     */
+    public static Report reconcile(boolean repair) {
+        long start = System.nanoTime();
+        List<String> users = UserManager.getAllUsers();
+
+        List<Drift> drifts = users.parallelStream()
+                .map(BalanceReconciler::check)
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparing(Drift::getUsername))
+                .collect(Collectors.toList());
+
+        if (repair && !drifts.isEmpty()) {
+            Map<String, Double> corrected = new HashMap<>();
+            for (Drift drift : drifts) {
+                if (drift.isRepairable()) {
+                    corrected.put(drift.getUsername(), drift.getReplayedBalance());
+                }
+            }
+            if (!corrected.isEmpty()) {
+                UserManager.updateBalances(corrected);
+            }
+        }
+
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        return new Report(users.size(), drifts, elapsed, repair);
+    }
+
+    private static Drift check(String username) {
+        double stored = UserManager.getBalance(username);
+        double replayed = 0;
+        double ledger = Double.NaN;
+        int records = 0;
+
+        File file = HistoryStore.fileFor(username);
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // Only the type, amount and balance columns are needed; skip timestamp parsing
+                    int close = line.indexOf("] ");
+                    int colon = close < 0 ? -1 : line.indexOf(": $", close);
+                    if (colon < 0) continue;
+
+                    int balanceAt = line.indexOf(TransactionRecord.BALANCE_MARKER, colon);
+                    int lineEnd = TransactionRecord.balanceEnd(line);
+                    int amountEnd = balanceAt < 0 ? lineEnd : balanceAt;
+                    double amount = parseMoney(line, colon + 3, amountEnd);
+                    if (Double.isNaN(amount)) continue;
+
+                    String type = line.substring(close + 2, colon);
+                    if (type.equals("Deposit")) {
+                        replayed += amount;
+                    } else if (type.equals("Withdrawal")) {
+                        replayed -= amount;
+                    } else {
+                        continue;
+                    }
+                    records++;
+                    if (balanceAt >= 0) {
+                        ledger = parseMoney(line, balanceAt + TransactionRecord.BALANCE_MARKER.length(), lineEnd);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading transaction history for " + username + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        if (Math.abs(stored - replayed) <= TOLERANCE) {
+            return null;
+        }
+        return new Drift(username, stored, replayed, ledger, records);
+    }
+
+    private static double parseMoney(String line, int from, int to) {
+        try {
+            return Double.parseDouble(line.substring(from, to).trim().replace(",", ""));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
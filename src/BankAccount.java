@@ -0,0 +1,23 @@
+class BankAccount {
+    private double balance;
+
+    public BankAccount(double initialBalance) {
+        if(initialBalance < 0) throw new IllegalArgumentException("Negative balance not allowed.");
+        balance = initialBalance;
+    }
+
+    public void deposit(double amount) {
+        if(amount <= 0) throw new IllegalArgumentException("Deposit amount must be positive.");
+        balance += amount;
+    }
+
+    public void withdraw(double amount) {
+        if(amount <= 0) throw new IllegalArgumentException("Withdrawal amount must be positive.");
+        if(amount > balance) throw new IllegalArgumentException("Insufficient funds for this withdrawal.");
+        balance -= amount;
+    }
+
+    public double getBalance() {
+        return balance;
+    }
+}
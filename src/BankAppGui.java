@@ -1,19 +1,20 @@
 import javax.swing.*;
 import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.io.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 public class BankAppGui extends JFrame {
-    private BankAccount account;
+    private double balance;
     private JTextField amountField;
     private JLabel balanceLabel;
     private JLabel statusLabel;
-    private JTextArea historyArea;
+    private HistoryTable historyTable;
     private boolean darkMode = false;
     private final Color lightBG = Color.WHITE;
     private final Color darkBG = new Color(40, 40, 40);
@@ -21,9 +22,13 @@ public class BankAppGui extends JFrame {
     private final Color darkFG = Color.LIGHT_GRAY;
     private final Color brandBlue = new Color(0, 102, 204);
     private final Color brandGold = new Color(204, 153, 0);
-    private List<Double> balancePoints = new ArrayList<>();
+    // Older points drop off the chart beyond this many
+    private static final int MAX_BALANCE_POINTS = 100_000;
+    private final DoubleSeries balancePoints = new DoubleSeries(MAX_BALANCE_POINTS);
     private String username;
     private ChartPanel chartPanel;
+    private static final long BLANK_AMOUNT = Long.MIN_VALUE + 1;
+    private final Segment amountText = new Segment(); // reused view of the amount field
     private boolean isAdmin;
 
     public BankAppGui(String username, boolean isAdmin, boolean darkMode) {
@@ -31,7 +36,7 @@ public class BankAppGui extends JFrame {
         this.isAdmin = isAdmin;
         this.darkMode = darkMode;
         double initialBalance = UserManager.getBalance(username);
-        account = new BankAccount(initialBalance);
+        balance = initialBalance;
 
         // Add initial balance point for the chart
         balancePoints.add(initialBalance);
@@ -79,7 +84,7 @@ public class BankAppGui extends JFrame {
         JPanel balancePanel = new JPanel(new BorderLayout());
         balancePanel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
 
-        balanceLabel = new JLabel("Current Balance: $" + String.format("%,.2f", account.getBalance()));
+        balanceLabel = new JLabel("Current Balance: $" + String.format("%,.2f", balance));
         balanceLabel.setFont(new Font("SansSerif", Font.BOLD, 18));
         balanceLabel.setForeground(brandBlue);
 
@@ -94,10 +99,8 @@ public class BankAppGui extends JFrame {
         JPanel historyPanel = new JPanel(new BorderLayout());
         historyPanel.setBorder(BorderFactory.createTitledBorder("Transaction History"));
 
-        historyArea = new JTextArea();
-        historyArea.setEditable(false);
-        historyArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        JScrollPane historyScroll = new JScrollPane(historyArea);
+        historyTable = new HistoryTable();
+        JScrollPane historyScroll = new JScrollPane(historyTable);
         historyPanel.add(historyScroll, BorderLayout.CENTER);
         centerPanel.add(historyPanel, BorderLayout.CENTER);
 
@@ -124,7 +127,7 @@ public class BankAppGui extends JFrame {
         JButton toggleThemeBtn = new JButton("Toggle Dark/Light Theme");
         toggleThemeBtn.setFont(new Font("SansSerif", Font.PLAIN, 12));
         toggleThemeBtn.addActionListener(e -> {
-            darkMode = !darkMode;
+            darkMode = !ThemeManager.isDarkMode();
             applyTheme();
         });
 
@@ -192,27 +195,27 @@ public class BankAppGui extends JFrame {
 
     private void handleDeposit() {
         try {
-            String amountText = amountField.getText().trim();
-            if (amountText.isEmpty()) {
+            long cents = readAmountCents();
+            if (cents == BLANK_AMOUNT) {
                 showError("Please enter an amount to deposit.");
                 return;
             }
+            if (cents == AmountParser.INVALID) {
+                showError("Please enter a valid amount, with at most two decimals.");
+                return;
+            }
 
-            amountText = amountText.replace(",", "");
-
-            double amount = Double.parseDouble(amountText);
-            if (amount <= 0) {
+            if (cents <= 0) {
                 showError("Amount must be greater than zero.");
                 return;
             }
-            account.deposit(amount);
-            UserManager.updateBalance(username, account.getBalance());
-            logTransaction("Deposit", amount);
-            updateUI("Successfully deposited $" + String.format("%,.2f", amount));
-        } catch (NumberFormatException e) {
-            showError("Please enter a valid number.");
-        } catch (IllegalArgumentException e) {
-            showError(e.getMessage());
+            AccountService.TransactionResult result = AccountService.deposit(username, cents);
+            if (!result.isSuccess()) {
+                showError(result.getMessage());
+                return;
+            }
+            historyTable.refresh();
+            updateUI(result);
         } catch (Exception e) {
             showError("An error occurred: " + e.getMessage());
         }
@@ -220,51 +223,56 @@ public class BankAppGui extends JFrame {
 
     private void handleWithdraw() {
         try {
-            String amountText = amountField.getText().trim();
-            if (amountText.isEmpty()) {
+            long cents = readAmountCents();
+            if (cents == BLANK_AMOUNT) {
                 showError("Please enter an amount to withdraw.");
                 return;
             }
+            if (cents == AmountParser.INVALID) {
+                showError("Please enter a valid amount, with at most two decimals.");
+                return;
+            }
 
-            amountText = amountText.replace(",", "");
-
-            double amount = Double.parseDouble(amountText);
-            if (amount <= 0) {
+            if (cents <= 0) {
                 showError("Amount must be greater than zero.");
                 return;
             }
-            account.withdraw(amount);
-            UserManager.updateBalance(username, account.getBalance());
-            logTransaction("Withdrawal", amount);
-            updateUI("Successfully withdrew $" + String.format("%,.2f", amount));
-        } catch (NumberFormatException e) {
-            showError("Please enter a valid number.");
-        } catch (IllegalArgumentException e) {
-            showError(e.getMessage());
+            AccountService.TransactionResult result = AccountService.withdraw(username, cents);
+            if (!result.isSuccess()) {
+                showError(result.getMessage());
+                return;
+            }
+            historyTable.refresh();
+            updateUI(result);
         } catch (Exception e) {
             showError("An error occurred: " + e.getMessage());
         }
     }
 
-    private void updateUI(String message) {
-        balanceLabel.setText("Current Balance: $" + String.format("%,.2f", account.getBalance()));
-        statusLabel.setText(message);
-        amountField.setText("");
-        balancePoints.add(account.getBalance());
-        if (chartPanel != null) {
-            chartPanel.updateData(balancePoints);
-            chartPanel.repaint();
+    // Parses the amount field in place into cents: BLANK_AMOUNT if empty, AmountParser.INVALID if malformed
+    private long readAmountCents() {
+        Document document = amountField.getDocument();
+        try {
+            document.getText(0, document.getLength(), amountText);
+        } catch (BadLocationException e) {
+            return AmountParser.INVALID;
+        }
+        for (int i = 0; i < amountText.length(); i++) {
+            if (!Character.isWhitespace(amountText.charAt(i))) {
+                return AmountParser.parseCents(amountText);
+            }
         }
+        return BLANK_AMOUNT;
     }
 
-    private void logTransaction(String type, double amount) {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-        String line = String.format("[%s] %s: $%,.2f - Balance: $%,.2f\n", timestamp, type, amount, account.getBalance());
-        historyArea.append(line);
-        try (FileWriter fw = new FileWriter(username + "_history.txt", true)) {
-            fw.write(line);
-        } catch(IOException e) {
-            e.printStackTrace();
+    private void updateUI(AccountService.TransactionResult result) {
+        balance = result.getBalance();
+        balanceLabel.setText("Current Balance: $" + String.format("%,.2f", balance));
+        statusLabel.setText(result.getMessage());
+        amountField.setText("");
+        balancePoints.add(balance);
+        if (chartPanel != null) {
+            chartPanel.repaint();
         }
     }
 
@@ -272,43 +280,11 @@ public class BankAppGui extends JFrame {
         JOptionPane.showMessageDialog(this, message, "Transaction Error", JOptionPane.ERROR_MESSAGE);
     }
 
-    // In BankAppGui.java
-
     private void applyTheme() {
-        // 1. Use the manager to style the whole window
-        ThemeManager.applyTheme(this.getContentPane(), darkMode);
-
-        // 2. Handle special components that need brand colors
-        if (balanceLabel != null) {
-            balanceLabel.setForeground(darkMode ? ThemeManager.BRAND_GOLD : ThemeManager.BRAND_BLUE);
-        }
-
-        // 3. Refresh the UI
-        SwingUtilities.updateComponentTreeUI(this);
-    }
-
-    private void applyThemeToContainer(Container container, Color bg, Color fg) {
-        container.setBackground(bg);
-        container.setForeground(fg);
-
-        for (Component comp : container.getComponents()) {
-            if (comp instanceof JPanel) {
-                comp.setBackground(bg);
-                comp.setForeground(fg);
-                applyThemeToContainer((Container)comp, bg, fg);
-            } else if (comp instanceof JTextField || comp instanceof JTextArea) {
-                comp.setBackground(darkMode ? new Color(60, 60, 60) : Color.WHITE);
-                comp.setForeground(darkMode ? Color.LIGHT_GRAY : Color.BLACK);
-            } else if (!(comp instanceof JButton || comp instanceof ChartPanel)) {
-                // Don't change the background of buttons (they have their own styling)
-                comp.setBackground(bg);
-                comp.setForeground(fg);
-            }
-
-            if (comp instanceof Container && !(comp instanceof JButton)) {
-                applyThemeToContainer((Container)comp, bg, fg);
-            }
-        }
+        // Components read the live theme colors, so switching is one flag flip and a repaint
+        ThemeManager.setDarkMode(darkMode);
+        balanceLabel.setForeground(ThemeManager.BALANCE);
+        repaint();
     }
 
     private void loadHistoryFromFile() {
@@ -317,11 +293,10 @@ public class BankAppGui extends JFrame {
             try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
-                    historyArea.append(line + "\n");
-
                     // Extract balance from history to populate chart data
                     try {
-                        String balanceStr = line.substring(line.lastIndexOf("$") + 1);
+                        int end = TransactionRecord.balanceEnd(line);
+                        String balanceStr = line.substring(line.lastIndexOf("$", end) + 1, end);
                         double balance = Double.parseDouble(balanceStr.replace(",", ""));
                         balancePoints.add(balance);
                     } catch (Exception e) {
@@ -332,38 +307,29 @@ public class BankAppGui extends JFrame {
                 e.printStackTrace();
             }
         }
-    }
-}
-
-
-
-class BankAccount {
-    private double balance;
-
-    public BankAccount(double initialBalance) {
-        if(initialBalance < 0) throw new IllegalArgumentException("Negative balance not allowed.");
-        balance = initialBalance;
-    }
-
-    public void deposit(double amount) {
-        if(amount <= 0) throw new IllegalArgumentException("Deposit amount must be positive.");
-        balance += amount;
-    }
-
-    public void withdraw(double amount) {
-        if(amount <= 0) throw new IllegalArgumentException("Withdrawal amount must be positive.");
-        if(amount > balance) throw new IllegalArgumentException("Insufficient funds for this withdrawal.");
-        balance -= amount;
-    }
+        chartPanel.repaint();
 
-    public double getBalance() {
-        return balance;
+        // The table reads rows from the file itself, only as they scroll into view
+        historyTable.setIndex(new HistoryIndex(file));
     }
 }
 
 class ChartPanel extends JPanel {
-    private List<Double> balances;
-    private boolean darkMode = false;
+    // Series up to this size are simply redrawn in full on every change
+    private static final int FULL_REDRAW_POINTS = 64;
+    private static final int PADDING = 20;
+    private static final int LABEL_PADDING = 20;
+
+    private final DoubleSeries balances;
+    // Points are placed by absolute position, counting every point the series was ever given, so dropping
+    // old points from a bounded series never moves a block; getAddedCount() - size() is the oldest one left
+    private long indexedAdded = 0; // positions folded into the levels
+    // Multi-resolution summary: levelMin[k][j] / levelMax[k][j] cover positions [b * 2^(k+1), (b + 1) * 2^(k+1))
+    // for block b = levelFirst[k] + j. Blocks of dropped points are discarded, whole, when the arrays fill up
+    private double[][] levelMin = new double[0][];
+    private double[][] levelMax = new double[0][];
+    private long[] levelFirst = new long[0];
+    private boolean darkMode = false; // theme the back buffer was rendered with
     private final Color lightGridColor = new Color(220, 220, 220);
     private final Color darkGridColor = new Color(70, 70, 70);
     private final Color lightLineColor = new Color(0, 102, 204);
@@ -371,39 +337,201 @@ class ChartPanel extends JPanel {
     private final Color lightPointColor = new Color(0, 51, 153);
     private final Color darkPointColor = new Color(102, 178, 255);
 
-    public ChartPanel(List<Double> balances) {
-        this.balances = new ArrayList<>(balances); // Create a copy
+    // Back buffer and the layout it was rendered with; appended points are drawn into it incrementally
+    private BufferedImage buffer;
+    private long bufferedAdded; // positions drawn
+    private long origin; // position at the left end of the x axis
+    private int blockSize; // points per block of the level the buffer was drawn from
+    private long capacity; // positions the x axis was laid out for, from the origin
+    private boolean sparse; // drawn as a polyline rather than per-pixel min/max strokes
+    private double axisMin;
+    private double axisMax;
+    private double xScale;
+    private double yScale;
+
+    /**
+     * Draws the given series, which the owner keeps appending to; call repaint() after adding points.
+     */
+    public ChartPanel(DoubleSeries balances) {
+        this.balances = balances;
         setPreferredSize(new Dimension(180, 200));
     }
-    
-    public void updateData(List<Double> newBalances) {
-        this.balances = new ArrayList<>(newBalances); // Create a copy
+
+    /**
+     * Brings the levels up to date with the series by folding in the appended points. Dropped points
+     * need no work here; their blocks are discarded as the levels grow.
+     */
+    private void syncLevels() {
+        long added = balances.getAddedCount();
+        long evicted = added - balances.size();
+        if (evicted > indexedAdded) {
+            // Points were dropped before they were ever indexed; start over from the oldest one left
+            levelMin = new double[0][];
+            levelMax = new double[0][];
+            levelFirst = new long[0];
+            indexedAdded = evicted;
+        }
+        while (indexedAdded < added) {
+            appendToLevels(indexedAdded++, evicted);
+        }
+    }
+
+    // Folds the point at the position into its block on every level, first adding a level
+    // once the top one spans more than two blocks of the points still in the series
+    private void appendToLevels(long position, long evicted) {
+        int top = levelMin.length;
+        if ((position >> top) - (evicted >> top) + 1 > 2) {
+            addLevel(position, evicted);
+        }
+        double value = balances.get((int) (position - evicted));
+        for (int k = 0; k < levelMin.length; k++) {
+            int j = slot(k, position >> (k + 1), evicted);
+            levelMin[k][j] = Math.min(levelMin[k][j], value);
+            levelMax[k][j] = Math.max(levelMax[k][j], value);
+        }
     }
-    
-    public void setDarkMode(boolean darkMode) {
-        this.darkMode = darkMode;
+
+    // Adds the level above the top one, folded from the blocks below it that cover the points before the position
+    private void addLevel(long position, long evicted) {
+        int k = levelMin.length;
+        long first = evicted >> (k + 1);
+        double[] min = emptyBlocks((int) ((position >> (k + 1)) - first + 1), Double.POSITIVE_INFINITY);
+        double[] max = emptyBlocks(min.length, Double.NEGATIVE_INFINITY);
+        for (long b = evicted >> k; b <= (position - 1) >> k; b++) {
+            int j = (int) ((b >> 1) - first);
+            min[j] = Math.min(min[j], blockMin(k - 1, b));
+            max[j] = Math.max(max[j], blockMax(k - 1, b));
+        }
+        levelMin = Arrays.copyOf(levelMin, k + 1);
+        levelMax = Arrays.copyOf(levelMax, k + 1);
+        levelFirst = Arrays.copyOf(levelFirst, k + 1);
+        levelMin[k] = min;
+        levelMax[k] = max;
+        levelFirst[k] = first;
+    }
+
+    // Index of block b in level k's arrays. When they are full, blocks of dropped points are discarded
+    // and the rest moved to arrays twice their number, so each block is copied O(1) times on average
+    private int slot(int k, long b, long evicted) {
+        int j = (int) (b - levelFirst[k]);
+        if (j < levelMin[k].length) return j;
+        long firstLive = evicted >> (k + 1);
+        int from = (int) (firstLive - levelFirst[k]);
+        double[] min = emptyBlocks((int) (b - firstLive + 1), Double.POSITIVE_INFINITY);
+        double[] max = emptyBlocks(min.length, Double.NEGATIVE_INFINITY);
+        System.arraycopy(levelMin[k], from, min, 0, levelMin[k].length - from);
+        System.arraycopy(levelMax[k], from, max, 0, levelMax[k].length - from);
+        levelMin[k] = min;
+        levelMax[k] = max;
+        levelFirst[k] = firstLive;
+        return (int) (b - firstLive);
+    }
+
+    private static double[] emptyBlocks(int needed, double fill) {
+        double[] blocks = new double[Math.max(4, 2 * needed)];
+        Arrays.fill(blocks, fill);
+        return blocks;
+    }
+
+    // Level -1 is the points themselves
+    private double blockMin(int k, long b) {
+        return k < 0 ? balances.get((int) (b - (balances.getAddedCount() - balances.size())))
+                : levelMin[k][(int) (b - levelFirst[k])];
+    }
+
+    private double blockMax(int k, long b) {
+        return k < 0 ? balances.get((int) (b - (balances.getAddedCount() - balances.size())))
+                : levelMax[k][(int) (b - levelFirst[k])];
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        if(balances == null || balances.isEmpty()) return;
-        
-        Graphics2D g2 = (Graphics2D) g;
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        
         int w = getWidth();
         int h = getHeight();
-        int padding = 20;
-        int labelPadding = 20;
+        if (balances.isEmpty() || w <= 2 * PADDING + LABEL_PADDING || h <= 2 * PADDING + LABEL_PADDING) return;
+
+        syncLevels();
+        if (darkMode != ThemeManager.isDarkMode()) {
+            darkMode = ThemeManager.isDarkMode();
+            buffer = null;
+        }
+        BankEvents.ChartRender event = new BankEvents.ChartRender();
+        event.begin();
+        String mode = "blit";
+        if (buffer == null || buffer.getWidth() != w || buffer.getHeight() != h || !canExtend()) {
+            render(w, h);
+            mode = "full";
+        } else if (bufferedAdded < balances.getAddedCount()) {
+            extend();
+            mode = "extend";
+        }
+        g.drawImage(buffer, 0, 0, null);
+        event.end();
+        if (event.shouldCommit()) {
+            event.chart = "balance";
+            event.points = balances.size();
+            event.width = w;
+            event.height = h;
+            event.mode = mode;
+            event.commit();
+        }
+    }
+
+    /**
+     * True if the appended points can be drawn onto the buffer as laid out. Dropped points stay drawn
+     * until the whole leading block the axis starts at is gone, which for a dense series is one pixel column.
+     */
+    private boolean canExtend() {
+        int plotWidth = buffer.getWidth() - 2 * PADDING - LABEL_PADDING;
+        int count = balances.size();
+        long added = balances.getAddedCount();
+        long evicted = added - count;
+        if (count <= FULL_REDRAW_POINTS || sparse != (count <= plotWidth)
+                || evicted - origin >= blockSize || bufferedAdded <= evicted || added - origin > capacity) {
+            return false;
+        }
+        // The points already drawn fit the axis; only the new ones need checking
+        for (long p = bufferedAdded; p < added; p++) {
+            double value = balances.get((int) (p - evicted));
+            if (value < axisMin || value > axisMax) return false;
+        }
+        return true;
+    }
+
+    private void render(int w, int h) {
+        buffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = buffer.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int padding = PADDING;
+        int labelPadding = LABEL_PADDING;
         
         // Background
         g2.setColor(darkMode ? new Color(30, 30, 30) : Color.WHITE);
         g2.fillRect(0, 0, w, h);
         
-        // Calculate min and max values for scaling
-        double minBalance = balances.stream().mapToDouble(b -> b).min().orElse(0);
-        double maxBalance = balances.stream().mapToDouble(b -> b).max().orElse(1);
+        int pointCount = balances.size();
+        long added = balances.getAddedCount();
+        long evicted = added - pointCount;
+        int plotWidth = w - 2 * padding - labelPadding;
+        sparse = pointCount <= plotWidth;
+        // More points than pixels are drawn from the finest cached level with at least one block per pixel column
+        int level = -1;
+        while (!sparse && level + 1 < levelMin.length && ((long) plotWidth << (level + 2)) <= pointCount) {
+            level++;
+        }
+        blockSize = 1 << (level + 1);
+        // The axis starts at the block holding the oldest point, so it only moves once that whole block is dropped
+        origin = evicted / blockSize * blockSize;
+        long firstBlock = origin / blockSize;
+        long lastBlock = (added - 1) / blockSize;
+
+        double minBalance = Double.POSITIVE_INFINITY;
+        double maxBalance = Double.NEGATIVE_INFINITY;
+        for (long b = firstBlock; b <= lastBlock; b++) {
+            minBalance = Math.min(minBalance, blockMin(level, b));
+            maxBalance = Math.max(maxBalance, blockMax(level, b));
+        }
         
         // Ensure min and max are different to avoid division by zero
         if (maxBalance == minBalance) {
@@ -411,9 +539,15 @@ class ChartPanel extends JPanel {
             else maxBalance *= 1.1;
         }
         
-        int pointCount = balances.size();
-        double xScale = ((double) (w - 2 * padding - labelPadding)) / (pointCount - 1);
-        double yScale = ((double) (h - 2 * padding - labelPadding)) / (maxBalance - minBalance);
+        long drawn = added - origin;
+        // Large series leave room on the right so the next points can be drawn without relayout
+        capacity = pointCount <= FULL_REDRAW_POINTS ? drawn : drawn + drawn / 8;
+        xScale = ((double) plotWidth) / Math.max(1, capacity - 1);
+        yScale = ((double) (h - 2 * padding - labelPadding)) / (maxBalance - minBalance);
+        axisMin = minBalance;
+        axisMax = maxBalance;
+        int baseX = padding + labelPadding;
+        int baseY = h - padding - labelPadding;
         
         // Draw grid lines
         g2.setColor(darkMode ? darkGridColor : lightGridColor);
@@ -426,38 +560,59 @@ class ChartPanel extends JPanel {
         }
         
         // Draw vertical grid lines
-        for (int i = 0; i < pointCount; i += Math.max(1, pointCount / 5)) {
-            int x = padding + labelPadding + (int)(i * xScale);
-            g2.drawLine(x, padding, x, h - padding - labelPadding);
+        for (long i = 0; i < capacity; i += Math.max(1, capacity / 5)) {
+            int x = baseX + (int)(i * xScale);
+            g2.drawLine(x, padding, x, baseY);
         }
         
         // Draw axes
         g2.setColor(darkMode ? Color.LIGHT_GRAY : Color.DARK_GRAY);
         g2.setStroke(new BasicStroke(2f));
-        g2.drawLine(padding + labelPadding, padding, padding + labelPadding, h - padding - labelPadding);
-        g2.drawLine(padding + labelPadding, h - padding - labelPadding, w - padding, h - padding - labelPadding);
+        g2.drawLine(baseX, padding, baseX, baseY);
+        g2.drawLine(baseX, baseY, w - padding, baseY);
         
         // Draw balance line
         g2.setColor(darkMode ? darkLineColor : lightLineColor);
-        g2.setStroke(new BasicStroke(2f));
-        
-        int[] xPoints = new int[pointCount];
-        int[] yPoints = new int[pointCount];
-        
-        for (int i = 0; i < pointCount; i++) {
-            xPoints[i] = padding + labelPadding + (int)(i * xScale);
-            yPoints[i] = h - padding - labelPadding - (int)((balances.get(i) - minBalance) * yScale);
-        }
-        
-        // Draw line
-        for (int i = 0; i < pointCount - 1; i++) {
-            g2.drawLine(xPoints[i], yPoints[i], xPoints[i + 1], yPoints[i + 1]);
-        }
-        
-        // Draw points
-        g2.setColor(darkMode ? darkPointColor : lightPointColor);
-        for (int i = 0; i < pointCount; i++) {
-            g2.fillOval(xPoints[i] - 4, yPoints[i] - 4, 8, 8);
+
+        if (sparse) {
+            g2.setStroke(new BasicStroke(2f));
+            int[] xPoints = new int[pointCount];
+            int[] yPoints = new int[pointCount];
+
+            for (int i = 0; i < pointCount; i++) {
+                xPoints[i] = xOf(evicted + i);
+                yPoints[i] = yOf(balances.get(i));
+            }
+            g2.drawPolyline(xPoints, yPoints, pointCount);
+
+            // Draw points only while they are far enough apart to be told apart
+            if (xScale >= 10) {
+                g2.setColor(darkMode ? darkPointColor : lightPointColor);
+                for (int i = 0; i < pointCount; i++) {
+                    g2.fillOval(xPoints[i] - 4, yPoints[i] - 4, 8, 8);
+                }
+            }
+        } else {
+            // One vertical min/max stroke per pixel column, folded from the level's blocks
+            // and joined to the previous column's last point
+            g2.setStroke(new BasicStroke(1f));
+            double previous = balances.get(0);
+            int columnX = baseX;
+            double low = previous;
+            double high = previous;
+            for (long b = firstBlock; b <= lastBlock; b++) {
+                int x = xOf(b * blockSize);
+                if (x != columnX) {
+                    g2.drawLine(columnX, yOf(low), columnX, yOf(high));
+                    previous = balances.get((int) (b * blockSize - 1 - evicted));
+                    columnX = x;
+                    low = previous;
+                    high = previous;
+                }
+                low = Math.min(low, blockMin(level, b));
+                high = Math.max(high, blockMax(level, b));
+            }
+            g2.drawLine(columnX, yOf(low), columnX, yOf(high));
         }
         
         // Draw the minimum and maximum values
@@ -465,6 +620,38 @@ class ChartPanel extends JPanel {
         g2.setFont(new Font("SansSerif", Font.PLAIN, 10));
         g2.drawString("$" + String.format("%,.2f", minBalance), 5, h - padding - labelPadding);
         g2.drawString("$" + String.format("%,.2f", maxBalance), 5, padding + 10);
+        g2.dispose();
+        bufferedAdded = added;
+    }
+
+    // Draws the points appended since the last paint onto the cached image
+    private void extend() {
+        Graphics2D g2 = buffer.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setStroke(new BasicStroke(sparse ? 2f : 1f));
+        long added = balances.getAddedCount();
+        long evicted = added - balances.size();
+        for (long p = bufferedAdded; p < added; p++) {
+            double from = balances.get((int) (p - 1 - evicted));
+            double to = balances.get((int) (p - evicted));
+            g2.setColor(darkMode ? darkLineColor : lightLineColor);
+            g2.drawLine(xOf(p - 1), yOf(from), xOf(p), yOf(to));
+            if (sparse && xScale >= 10) {
+                g2.setColor(darkMode ? darkPointColor : lightPointColor);
+                g2.fillOval(xOf(p - 1) - 4, yOf(from) - 4, 8, 8);
+                g2.fillOval(xOf(p) - 4, yOf(to) - 4, 8, 8);
+            }
+        }
+        g2.dispose();
+        bufferedAdded = added;
+    }
+
+    private int xOf(long position) {
+        return PADDING + LABEL_PADDING + (int) ((position - origin) * xScale);
+    }
+
+    private int yOf(double balance) {
+        return buffer.getHeight() - PADDING - LABEL_PADDING - (int) ((balance - axisMin) * yScale);
     }
 }
 
@@ -723,7 +910,14 @@ class RegistrationForm extends JFrame {
             return;
         }
 
-        UserManager.registerUser(username, pin, isAdmin);
+        if (!UserManager.registerUser(username, pin, isAdmin)) {
+            // Taken in the meantime, possibly by another process sharing the account store
+            JOptionPane.showMessageDialog(this,
+                    "Could not register this username. Choose another.",
+                    "Registration Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
         JOptionPane.showMessageDialog(this, "User registered successfully!");
         dispose(); // Close the registration window
     }
@@ -0,0 +1,110 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder events for the banking hot paths. Each event times its operation through
+ * begin()/commit(), so durations come from JFR itself; fields are only filled in once shouldCommit()
+ * says a recording wants the event, which keeps the cost near zero when nothing is recording.
+ *
+ * <pre>
+ * java -XX:StartFlightRecording=filename=fancybank.jfr,settings=profile -jar fancybank.jar
+ * jfr print --categories FancyBank fancybank.jfr
+ * </pre>
+ */
+public final class BankEvents {
+    private BankEvents() {
+    }
+
+    @Name("fancybank.AccountStoreSave")
+    @Label("Account Store Save")
+    @Category({"FancyBank", "Account Store"})
+    @Description("An account shard file rewritten with every account in the shard")
+    public static class AccountStoreSave extends Event {
+        @Label("Username")
+        @Description("Account whose change triggered the save, or null for bulk updates")
+        String username;
+
+        @Label("Shard")
+        int shard;
+
+        @Label("Accounts")
+        int accounts;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("fancybank.HistoryWrite")
+    @Label("History Write")
+    @Category({"FancyBank", "History"})
+    @Description("Transaction lines appended to a user's history file")
+    public static class HistoryWrite extends Event {
+        @Label("Username")
+        String username;
+
+        @Label("Records")
+        int records;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("fancybank.HistoryLoad")
+    @Label("History Load")
+    @Category({"FancyBank", "History"})
+    @Description("A user's history file read and parsed into transaction records")
+    public static class HistoryLoad extends Event {
+        @Label("Username")
+        String username;
+
+        @Label("Records")
+        int records;
+
+        @Label("Bytes Read")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("fancybank.AlertAnalysis")
+    @Label("Alert Analysis")
+    @Category({"FancyBank", "Alerts"})
+    @Description("Suspicious activity analysis over the loaded histories")
+    public static class AlertAnalysis extends Event {
+        @Label("Users")
+        int users;
+
+        @Label("Records")
+        long records;
+
+        @Label("Alerts")
+        int alerts;
+    }
+
+    @Name("fancybank.ChartRender")
+    @Label("Chart Render")
+    @Category({"FancyBank", "Rendering"})
+    @Description("A chart painted, with or without redrawing its back buffer")
+    public static class ChartRender extends Event {
+        @Label("Chart")
+        String chart;
+
+        @Label("Points")
+        int points;
+
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Mode")
+        @Description("full, extend or blit")
+        String mode;
+    }
+}
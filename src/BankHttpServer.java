@@ -0,0 +1,238 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP front end to AccountService, for driving the bank from other processes without the UI.
+ * Listens on the loopback interface only and handles every request on its own virtual thread.
+ *
+ * <pre>
+ * GET  /accounts/{user}/balance
+ * POST /accounts/{user}/deposit?amount=12.34
+ * POST /accounts/{user}/withdraw?amount=12.34
+ * GET  /accounts/{user}/history?limit=50
+ * GET  /stats
+ * </pre>
+ * Account requests must carry the account PIN in an X-PIN header. Responses are JSON.
+ * Deposits and withdrawals may carry an Idempotency-Key header (or id parameter) naming the transaction;
+ * retrying with the same key after a timeout returns 200 with "duplicate":true instead of applying it twice.
+ */
+public class BankHttpServer {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_HISTORY_LIMIT = 50;
+    private static final int MAX_HISTORY_LIMIT = 1000;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Latency per operation, from request accepted to response written
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    static {
+        // Small JSON responses otherwise wait on Nagle's algorithm and delayed ACKs between requests
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    public BankHttpServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/accounts/", this::handleAccount);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("FancyBank server listening on http://" + server.getAddress().getHostString()
+                + ":" + server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+        System.out.print(latencyReport());
+    }
+
+    public String latencyReport() {
+        StringBuilder sb = new StringBuilder("Request latency:" + System.lineSeparator());
+        latencies.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> sb.append(String.format(Locale.ROOT, "  %-10s %s%n", e.getKey(), e.getValue())));
+        return sb.toString();
+    }
+
+    private void handleAccount(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String operation = "invalid";
+        try {
+            // /accounts/{user}/{operation}
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            if (parts.length != 4) {
+                send(exchange, 404, error("Unknown endpoint"));
+                return;
+            }
+            String username = URLDecoder.decode(parts[2], StandardCharsets.UTF_8);
+            operation = parts[3];
+            String method = exchange.getRequestMethod();
+            boolean write = operation.equals("deposit") || operation.equals("withdraw");
+            boolean read = operation.equals("balance") || operation.equals("history");
+            if (!write && !read) {
+                operation = "invalid";
+                send(exchange, 404, error("Unknown endpoint"));
+                return;
+            }
+            if (!method.equals(write ? "POST" : "GET")) {
+                send(exchange, 405, error("Use " + (write ? "POST" : "GET") + " for " + operation));
+                return;
+            }
+            String pin = exchange.getRequestHeaders().getFirst("X-PIN");
+            if (pin == null || !UserManager.validateUser(username, pin)) {
+                send(exchange, 401, error("Invalid username or PIN"));
+                return;
+            }
+
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            switch (operation) {
+                case "balance":
+                    send(exchange, 200, String.format(Locale.ROOT, "{\"user\":%s,\"balance\":%.2f}",
+                            quote(username), AccountService.getBalance(username)));
+                    break;
+                case "history":
+                    sendHistory(exchange, username, query.get("limit"));
+                    break;
+                default:
+                    long cents = parseCents(query.get("amount"));
+                    if (cents <= 0) {
+                        send(exchange, 400, error("amount must be a positive number with at most two decimals"));
+                        return;
+                    }
+                    String id = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+                    if (id == null) {
+                        id = query.get("id");
+                    }
+                    if (id != null && !TransactionIds.isValid(id)) {
+                        send(exchange, 400, error("Idempotency-Key must be 1 to " + TransactionIds.MAX_ID_LENGTH
+                                + " letters, digits or . _ : -"));
+                        return;
+                    }
+                    AccountService.TransactionResult result = operation.equals("deposit")
+                            ? AccountService.deposit(username, cents, id)
+                            : AccountService.withdraw(username, cents, id);
+                    if (result.isSuccess()) {
+                        send(exchange, 200, String.format(Locale.ROOT, "{\"user\":%s,\"id\":%s,\"type\":%s,\"amount\":%.2f,\"balance\":%.2f}",
+                                quote(username), quote(result.getId()), quote(result.getType()), result.getAmount(), result.getBalance()));
+                    } else if (result.isDuplicate()) {
+                        send(exchange, 200, String.format(Locale.ROOT, "{\"user\":%s,\"id\":%s,\"duplicate\":true,\"balance\":%.2f}",
+                                quote(username), quote(result.getId()), result.getBalance()));
+                    } else {
+                        send(exchange, 409, String.format(Locale.ROOT, "{\"error\":%s,\"balance\":%.2f}",
+                                quote(result.getMessage()), result.getBalance()));
+                    }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error handling " + exchange.getRequestURI() + ": " + e.getMessage());
+            send(exchange, 500, error("Internal error"));
+        } finally {
+            latencies.computeIfAbsent(operation, key -> new LatencyHistogram()).record(System.nanoTime() - start);
+        }
+    }
+
+    private void sendHistory(HttpExchange exchange, String username, String limitText) throws IOException {
+        int limit = DEFAULT_HISTORY_LIMIT;
+        if (limitText != null) {
+            try {
+                limit = Math.max(1, Math.min(MAX_HISTORY_LIMIT, Integer.parseInt(limitText)));
+            } catch (NumberFormatException e) {
+                send(exchange, 400, error("limit must be a whole number"));
+                return;
+            }
+        }
+        List<TransactionRecord> records = AccountService.getHistory(username, limit);
+        StringBuilder json = new StringBuilder("{\"user\":").append(quote(username)).append(",\"transactions\":[");
+        for (int i = 0; i < records.size(); i++) {
+            TransactionRecord record = records.get(i);
+            if (i > 0) json.append(',');
+            json.append(String.format(Locale.ROOT, "{\"timestamp\":\"%s\",\"type\":%s,\"amount\":%.2f,\"id\":%s}",
+                    record.getTimestamp(), quote(record.getType()), record.getAmount(),
+                    record.getId() == null ? "null" : quote(record.getId())));
+        }
+        send(exchange, 200, json.append("]}").toString());
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder("{");
+        latencies.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> {
+            LatencyHistogram h = e.getValue();
+            if (json.length() > 1) json.append(',');
+            json.append(String.format(Locale.ROOT, "%s:{\"count\":%d,\"p50_us\":%.1f,\"p90_us\":%.1f,\"p99_us\":%.1f,\"p999_us\":%.1f,\"max_us\":%.1f}",
+                    quote(e.getKey()), h.getCount(), h.quantileNanos(0.5) / 1000.0, h.quantileNanos(0.9) / 1000.0,
+                    h.quantileNanos(0.99) / 1000.0, h.quantileNanos(0.999) / 1000.0, h.getMaxNanos() / 1000.0));
+        });
+        send(exchange, 200, json.append('}').toString());
+    }
+
+    // Amounts on the wire always use '.' as the decimal point, whatever the server's locale
+    private static long parseCents(String amount) {
+        if (amount == null) return -1;
+        try {
+            return new BigDecimal(amount).movePointRight(2).longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
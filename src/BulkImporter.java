@@ -0,0 +1,291 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Replays historical deposits and withdrawals from a CSV file into the account store and history files.
+ * Lines are read in batches; each batch is validated in parallel, grouped per account, applied to the
+ * balances in file order, and committed with one save per account shard, one history write per account and one
+ * rollup save. Rows that fail validation, would overdraw an account or repeat an applied transaction ID
+ * are written to a rejects file.
+ *
+ * <pre>
+ * username,timestamp,type,amount[,id]
+ * alice,2023-01-01 12:00:00,Deposit,100.00,inv-2023-0001
+ * </pre>
+ * The header is optional; amounts use '.' as the decimal point and no grouping. Rows without an id get one
+ * derived from their contents and how many identical rows precede them in the file, so importing the same
+ * file again rejects every row instead of doubling it, while genuinely repeated rows are all imported.
+ * Intended to run while no other FancyBank process is writing to the same accounts.
+ */
+public class BulkImporter {
+    private static final int BATCH_SIZE = 200_000;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static class Report {
+        private final long rowsRead;
+        private final long rowsImported;
+        private final long rowsRejected;
+        private final int accountsTouched;
+        private final long elapsedMillis;
+        private final File rejectsFile;
+
+        Report(long rowsRead, long rowsImported, long rowsRejected, int accountsTouched, long elapsedMillis, File rejectsFile) {
+            this.rowsRead = rowsRead;
+            this.rowsImported = rowsImported;
+            this.rowsRejected = rowsRejected;
+            this.accountsTouched = accountsTouched;
+            this.elapsedMillis = elapsedMillis;
+            this.rejectsFile = rejectsFile;
+        }
+
+        public long getRowsImported() {
+            return rowsImported;
+        }
+
+        public long getRowsRejected() {
+            return rowsRejected;
+        }
+
+        @Override
+        public String toString() {
+            double rate = elapsedMillis == 0 ? rowsRead : rowsRead * 1000.0 / elapsedMillis;
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Import: %,d rows read, %,d imported into %,d accounts, %,d rejected in %,d ms (%,.0f rows/s)%n",
+                    rowsRead, rowsImported, accountsTouched, rowsRejected, elapsedMillis, rate));
+            if (rowsRejected > 0) {
+                sb.append("  Rejected rows written to ").append(rejectsFile.getPath()).append(System.lineSeparator());
+            }
+            return sb.toString();
+        }
+    }
+
+    // One validated row; lineNumber keeps file order within an account
+    private static class Row {
+        final long lineNumber;
+        final String username;
+        final LocalDateTime timestamp;
+        final String type;
+        final long cents;
+        final String id; // as given in the file, or null to derive one
+
+        Row(long lineNumber, String username, LocalDateTime timestamp, String type, long cents, String id) {
+            this.lineNumber = lineNumber;
+            this.username = username;
+            this.timestamp = timestamp;
+            this.type = type;
+            this.cents = cents;
+            this.id = id;
+        }
+    }
+
+    private static class Rejection {
+        final long lineNumber;
+        final String line;
+        final String reason;
+
+        Rejection(long lineNumber, String line, String reason) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * Imports the file; rejected rows go to "<file>.rejects.csv" next to it.
+     */
+    public static Report importFile(File csv) throws IOException {
+        long start = System.nanoTime();
+        File rejectsFile = new File(csv.getPath() + ".rejects.csv");
+        long rowsRead = 0;
+        long imported = 0;
+        long rejected = 0;
+        Set<String> accounts = new HashSet<>();
+        // Rows without an id seen so far, by derived id, to number identical rows across batches
+        Map<String, Integer> occurrences = new ConcurrentHashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(csv), StandardCharsets.UTF_8), 1 << 16);
+             PrintWriter rejects = new PrintWriter(new BufferedWriter(new FileWriter(rejectsFile)))) {
+            rejects.println("line,reason,row");
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            long lineNumber = 0;
+            long batchStart = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 && line.toLowerCase(Locale.ROOT).startsWith("username,")) {
+                    batchStart = 2;
+                    continue;
+                }
+                batch.add(line);
+                if (batch.size() == BATCH_SIZE) {
+                    long[] counts = importBatch(batch, batchStart, rejects, accounts, occurrences);
+                    imported += counts[0];
+                    rejected += counts[1];
+                    rowsRead += batch.size();
+                    batch.clear();
+                    batchStart = lineNumber + 1;
+                }
+            }
+            if (!batch.isEmpty()) {
+                long[] counts = importBatch(batch, batchStart, rejects, accounts, occurrences);
+                imported += counts[0];
+                rejected += counts[1];
+                rowsRead += batch.size();
+            }
+        }
+        if (rejected == 0) {
+            rejectsFile.delete();
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        return new Report(rowsRead, imported, rejected, accounts.size(), elapsed, rejectsFile);
+    }
+
+    // Returns {imported, rejected}
+    private static long[] importBatch(List<String> lines, long firstLineNumber, PrintWriter rejects, Set<String> accounts,
+                                      Map<String, Integer> occurrences) {
+        // 1. Validate in parallel
+        List<Rejection> rejections = Collections.synchronizedList(new ArrayList<>());
+        Map<String, List<Row>> byAccount = IntStream.range(0, lines.size()).parallel()
+                .mapToObj(i -> parse(firstLineNumber + i, lines.get(i), rejections))
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingByConcurrent(row -> row.username));
+
+        // 2. Apply per account in file order; accounts are independent, so in parallel
+        Map<String, Double> balances = new ConcurrentHashMap<>();
+        Map<String, List<String>> historyLines = new ConcurrentHashMap<>();
+        Map<String, List<TransactionRecord>> records = new ConcurrentHashMap<>();
+        Map<String, List<String>> ids = new ConcurrentHashMap<>();
+        Map<String, List<Row>> applied = new ConcurrentHashMap<>();
+        byAccount.entrySet().parallelStream().forEach(entry -> {
+            String username = entry.getKey();
+            List<Row> rows = entry.getValue();
+            rows.sort(Comparator.comparingLong(row -> row.lineNumber));
+
+            long balance = Math.round(UserManager.getBalance(username) * 100);
+            List<String> accountLines = new ArrayList<>(rows.size());
+            List<TransactionRecord> accountRecords = new ArrayList<>(rows.size());
+            List<String> accountIds = new ArrayList<>(rows.size());
+            List<Row> accountRows = new ArrayList<>(rows.size());
+            Set<String> batchIds = new HashSet<>();
+            for (Row row : rows) {
+                boolean deposit = row.type.equals("Deposit");
+                // Identical rows belong to one account, so this thread alone numbers them, in file order
+                String id = row.id != null ? row.id : derivedId(row, occurrences);
+                String reason = null;
+                if (!batchIds.add(id) || TransactionIds.contains(username, id)) {
+                    reason = "duplicate transaction id";
+                } else if (!deposit && row.cents > balance) {
+                    reason = "insufficient funds";
+                }
+                if (reason != null) {
+                    rejections.add(new Rejection(row.lineNumber, lines.get((int) (row.lineNumber - firstLineNumber)), reason));
+                    continue;
+                }
+                balance += deposit ? row.cents : -row.cents;
+                double amount = row.cents / 100.0;
+                accountLines.add(TransactionRecord.toHistoryLine(row.timestamp, row.type, amount, balance / 100.0, id));
+                accountRecords.add(new TransactionRecord(row.type, amount, row.timestamp));
+                accountIds.add(id);
+                accountRows.add(row);
+            }
+            if (!accountLines.isEmpty()) {
+                balances.put(username, balance / 100.0);
+                historyLines.put(username, accountLines);
+                records.put(username, accountRecords);
+                ids.put(username, accountIds);
+                applied.put(username, accountRows);
+            }
+        });
+
+        // 3. Commit: history per account, then balances and rollups with one save each.
+        // An account whose history could not be written keeps its old balance and has its rows rejected.
+        List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        historyLines.entrySet().parallelStream().forEach(entry -> {
+            try {
+                HistoryStore.appendAll(entry.getKey(), entry.getValue());
+                for (String id : ids.get(entry.getKey())) {
+                    TransactionIds.add(entry.getKey(), id);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing transaction history for " + entry.getKey() + ": " + e.getMessage());
+                failed.add(entry.getKey());
+            }
+        });
+        for (String username : failed) {
+            balances.remove(username);
+            records.remove(username);
+            historyLines.remove(username);
+            for (Row row : applied.get(username)) {
+                rejections.add(new Rejection(row.lineNumber, lines.get((int) (row.lineNumber - firstLineNumber)),
+                        "history write failed"));
+            }
+        }
+        if (!balances.isEmpty()) {
+            UserManager.updateBalances(balances);
+            RollupStore.recordAll(records);
+        }
+        accounts.addAll(balances.keySet());
+
+        rejections.sort(Comparator.comparingLong(r -> r.lineNumber));
+        for (Rejection rejection : rejections) {
+            rejects.println(rejection.lineNumber + "," + rejection.reason + "," + rejection.line);
+        }
+        long importedRows = 0;
+        for (List<String> accountLines : historyLines.values()) {
+            importedRows += accountLines.size();
+        }
+        return new long[]{importedRows, rejections.size()};
+    }
+
+    private static Row parse(long lineNumber, String line, List<Rejection> rejections) {
+        String[] fields = line.split(",", -1);
+        String reason = null;
+        if (fields.length != 4 && fields.length != 5) {
+            reason = "expected 4 or 5 fields";
+        } else {
+            String username = fields[0].trim();
+            String type = fields[2].trim();
+            long cents = AmountParser.parseCents(fields[3], '.', (char) 0);
+            LocalDateTime timestamp = parseTimestamp(fields[1].trim());
+            String id = fields.length == 5 ? fields[4].trim() : null;
+            if (!UserManager.userExists(username)) {
+                reason = "unknown account";
+            } else if (timestamp == null) {
+                reason = "invalid timestamp";
+            } else if (!type.equals("Deposit") && !type.equals("Withdrawal")) {
+                reason = "type must be Deposit or Withdrawal";
+            } else if (cents == AmountParser.INVALID || cents <= 0) {
+                reason = "amount must be positive with at most two decimals";
+            } else if (id != null && !TransactionIds.isValid(id)) {
+                reason = "id must be 1 to " + TransactionIds.MAX_ID_LENGTH + " letters, digits or . _ : -";
+            } else {
+                return new Row(lineNumber, username, timestamp, type, cents, id);
+            }
+        }
+        rejections.add(new Rejection(lineNumber, line, reason));
+        return null;
+    }
+
+    // A name-based UUID of the normalized fields and of how many identical rows came before in the file
+    private static String derivedId(Row row, Map<String, Integer> occurrences) {
+        String key = row.username + '\n' + row.timestamp.format(TIMESTAMP) + '\n' + row.type + '\n' + row.cents;
+        int occurrence = occurrences.merge(key, 1, Integer::sum);
+        key += "\n#" + occurrence;
+        return "import-" + UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LocalDateTime parseTimestamp(String text) {
+        try {
+            return text.indexOf('T') > 0 ? LocalDateTime.parse(text) : LocalDateTime.parse(text, TIMESTAMP);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
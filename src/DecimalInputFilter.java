@@ -2,9 +2,12 @@ import javax.swing.text.*;
 import java.awt.Toolkit;
 
 public class DecimalInputFilter extends DocumentFilter {
+    // Reused view of the document text, so validating a keystroke copies nothing
+    private final Segment current = new Segment();
+
     @Override
     public void insertString(FilterBypass fb, int offset, String string, AttributeSet attr) throws BadLocationException {
-        if (isValid(fb.getDocument().getText(0, fb.getDocument().getLength()), string, offset)) {
+        if (isValid(fb.getDocument(), offset, 0, string)) {
             super.insertString(fb, offset, string, attr);
         } else {
             Toolkit.getDefaultToolkit().beep(); // Alert user they can't type that
@@ -13,24 +16,16 @@ public class DecimalInputFilter extends DocumentFilter {
 
     @Override
     public void replace(FilterBypass fb, int offset, int length, String text, AttributeSet attrs) throws BadLocationException {
-        if (isValid(fb.getDocument().getText(0, fb.getDocument().getLength()), text, offset)) {
+        if (isValid(fb.getDocument(), offset, length, text)) {
             super.replace(fb, offset, length, text, attrs);
         } else {
             Toolkit.getDefaultToolkit().beep();
         }
     }
 
-    private boolean isValid(String currentText, String newText, int offset) {
-        // Construct what the result would be
-        StringBuilder result = new StringBuilder(currentText);
-        result.insert(offset, newText);
-        String text = result.toString();
-
-        // Allow empty string (user deleted everything)
-        if (text.isEmpty()) return true;
-
-        // Regex: Optional minus sign, digits, optional decimal point, optional 1 or 2 digits
-        // Matches: "123", "123.", "123.5", "123.55", ".5"
-        return text.matches("^-?[0-9]*\\.?[0-9]{0,2}$");
+    private boolean isValid(Document document, int offset, int removed, String newText) throws BadLocationException {
+        // Matches what AmountParser accepts while typing: "123", "1,234.", "123.5", "-.55", ""
+        document.getText(0, document.getLength(), current);
+        return AmountParser.isValidEdit(current, offset, removed, newText);
     }
-}
\ No newline at end of file
+}
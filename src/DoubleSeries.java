@@ -0,0 +1,109 @@
+/**
+ * Growable series of primitive doubles with cached min/max, optionally bounded as a ring buffer.
+ * When bounded and full, adding a value drops the oldest one.
+ */
+public class DoubleSeries {
+    private double[] values;
+    private int head = 0; // position of the oldest value
+    private int size = 0;
+    private final int maxSize; // 0 means unbounded
+    private long addedCount = 0;
+    private double min;
+    private double max;
+    private boolean extremaValid = true;
+
+    public DoubleSeries() {
+        this(0);
+    }
+
+    public DoubleSeries(int maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("Maximum size cannot be negative.");
+        this.maxSize = maxSize;
+        this.values = new double[maxSize > 0 ? Math.min(maxSize, 16) : 16];
+    }
+
+    public void add(double value) {
+        if (maxSize > 0 && size == maxSize) {
+            double evicted = values[head];
+            head = (head + 1) % values.length;
+            size--;
+            if (evicted == min || evicted == max) {
+                extremaValid = false;
+            }
+        }
+        if (size == values.length) {
+            grow();
+        }
+        values[(head + size) % values.length] = value;
+        size++;
+        addedCount++;
+
+        if (extremaValid) {
+            min = size == 1 ? value : Math.min(min, value);
+            max = size == 1 ? value : Math.max(max, value);
+        }
+    }
+
+    /**
+     * Returns the i-th value, oldest first.
+     */
+    public double get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index " + i + " of " + size);
+        return values[(head + i) % values.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Total values ever added; addedCount - size is how many were dropped from a bounded series.
+     */
+    public long getAddedCount() {
+        return addedCount;
+    }
+
+    public double min() {
+        ensureExtrema();
+        return min;
+    }
+
+    public double max() {
+        ensureExtrema();
+        return max;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        extremaValid = true;
+    }
+
+    private void ensureExtrema() {
+        if (extremaValid) return;
+        // Only after the old min or max was dropped from a full ring buffer
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            double value = get(i);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        extremaValid = true;
+    }
+
+    private void grow() {
+        int capacity = values.length * 2;
+        if (maxSize > 0) capacity = Math.min(capacity, maxSize);
+        double[] grown = new double[capacity];
+        for (int i = 0; i < size; i++) {
+            grown[i] = get(i);
+        }
+        values = grown;
+        head = 0;
+    }
+}
@@ -0,0 +1,38 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Taking the file locks the multi-process mode relies on. FileChannel.lock waits inside the kernel, which
+ * tracks waits per process rather than per thread: with one thread of a process holding a lock and another
+ * waiting, two processes easily look deadlocked to it when they are not, and the lock fails with "Resource
+ * deadlock avoided". Polling tryLock with a short backoff never waits in the kernel, so that cannot happen.
+ */
+final class FileLocks {
+    private static final long MIN_BACKOFF_NANOS = 10_000;
+    private static final long MAX_BACKOFF_NANOS = 1_000_000;
+
+    private FileLocks() {
+    }
+
+    static FileLock lock(FileChannel channel) throws IOException {
+        return lock(channel, 0, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * Locks the range, waiting as long as another process holds an overlapping lock. Threads of this process
+     * must not hold overlapping locks of the same file; callers keep them apart with their own locks.
+     */
+    static FileLock lock(FileChannel channel, long position, long size, boolean shared) throws IOException {
+        long backoff = MIN_BACKOFF_NANOS;
+        while (true) {
+            FileLock lock = channel.tryLock(position, size, shared);
+            if (lock != null) {
+                return lock;
+            }
+            LockSupport.parkNanos(backoff);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+        }
+    }
+}
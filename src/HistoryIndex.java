@@ -0,0 +1,163 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Line index over a history file: the byte offset and length of every non-blank line.
+ * Lines are read back by row number on demand, so callers never hold the whole history in memory.
+ * Rows are read with positional reads on one channel kept open until close().
+ * <p>
+ * Lines end at '\n' only, and a line is blank if it has no character above ' ', the rule of String.trim();
+ * every way of reading rows back goes through the index, so rows never shift between readers.
+ */
+public class HistoryIndex implements Closeable {
+    private final File file;
+    private FileChannel channel; // opened on the first readLine
+    private long[] starts = new long[1024];
+    private int[] lengths = new int[1024];
+    private int size = 0;
+    private long indexedLength = 0; // bytes of the file covered by the index
+
+    public HistoryIndex(File file) {
+        this.file = file;
+        refresh();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Indexes lines appended since the last scan and returns how many rows were added.
+     */
+    public synchronized int refresh() {
+        if (!file.exists() || file.length() <= indexedLength) {
+            return 0;
+        }
+        int before = size;
+        try (FileInputStream in = new FileInputStream(file)) {
+            in.getChannel().position(indexedLength);
+            byte[] buffer = new byte[1 << 16];
+            long position = indexedLength;
+            long lineStart = position;
+            boolean blank = true;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n') {
+                        if (!blank) {
+                            add(lineStart, (int) (position + i - lineStart));
+                        }
+                        lineStart = position + i + 1;
+                        blank = true;
+                    } else if ((b & 0xff) > ' ') {
+                        blank = false;
+                    }
+                }
+                position += read;
+            }
+            // A trailing line without newline is still being written; pick it up next time
+            indexedLength = lineStart;
+        } catch (IOException e) {
+            System.err.println("Error indexing " + file.getName() + ": " + e.getMessage());
+        }
+        return size - before;
+    }
+
+    /**
+     * Reads the line stored at the given row (file order).
+     */
+    public String readLine(int row) {
+        long start;
+        int length;
+        synchronized (this) {
+            if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+            start = starts[row];
+            length = lengths[row];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            FileChannel in = channel();
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer, start + buffer.position()) < 0) break;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading " + file.getName() + ": " + e.getMessage());
+            return "";
+        }
+        return decode(buffer.array(), buffer.position());
+    }
+
+    private static String decode(byte[] bytes, int length) {
+        return new String(bytes, 0, length, Charset.defaultCharset()).trim();
+    }
+
+    // Positional reads leave the channel's own position alone, so threads can share it
+    private synchronized FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        return channel;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing " + file.getName() + ": " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Reads the first rows indexed lines in file order, for building sort keys in one sequential pass.
+     * Safe to call off the thread that refreshes the index.
+     */
+    public void forEachLine(int rows, LineConsumer consumer) {
+        long[] rowStarts;
+        int[] rowLengths;
+        synchronized (this) {
+            if (rows > size) throw new IndexOutOfBoundsException("Rows " + rows + " of " + size);
+            // Entries below size never change, even while refresh() appends
+            rowStarts = starts;
+            rowLengths = lengths;
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            byte[] line = new byte[256];
+            long position = 0;
+            for (int row = 0; row < rows; row++) {
+                in.skipNBytes(rowStarts[row] - position);
+                int length = rowLengths[row];
+                if (length > line.length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                if (in.readNBytes(line, 0, length) < length) break; // the file was replaced
+                position = rowStarts[row] + length;
+                consumer.accept(row, decode(line, length));
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    public interface LineConsumer {
+        void accept(int row, String line);
+    }
+
+    private void add(long start, int length) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        starts[size] = start;
+        lengths[size] = length;
+        size++;
+    }
+}
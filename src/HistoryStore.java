@@ -0,0 +1,223 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+public class HistoryStore {
+    private static final String HISTORY_SUFFIX = "_history.txt";
+    private static final int TAIL_CHUNK = 8192;
+    private static final LatencyHistogram appendTimer = Metrics.timer(Metrics.HISTORY_APPEND);
+    private static final LongAdder linesAppended = Metrics.counter("HistoryStore.linesAppended");
+
+    /**
+     * Returns the history file for a user ("<username>_history.txt" in the working directory)
+     */
+    public static File fileFor(String username) {
+        return new File(username + HISTORY_SUFFIX);
+    }
+
+    /**
+     * Streams every parseable record of a user's history to the consumer, oldest first.
+     * Unparseable lines are skipped.
+     */
+    public static void forEachRecord(String username, Consumer<TransactionRecord> consumer) {
+        File file = fileFor(username);
+        if (!file.exists()) {
+            return;
+        }
+        BankEvents.HistoryLoad event = new BankEvents.HistoryLoad();
+        event.begin();
+        int records = 0;
+        long chars = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                chars += line.length() + 1;
+                if (line.trim().isEmpty()) continue;
+                TransactionRecord record = TransactionRecord.fromString(line);
+                if (record != null) {
+                    records++;
+                    consumer.accept(record);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading transaction history for " + username + ": " + e.getMessage());
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            // History lines are ASCII, so characters read is the byte count
+            event.username = username;
+            event.records = records;
+            event.bytes = chars;
+            event.commit();
+        }
+    }
+
+    /**
+     * Streams the parseable records of a user's history that start at or after the byte offset, oldest first,
+     * and returns the offset just past the last complete line, where the next call should continue. A final
+     * line without its newline is still being written and is left for the next call. If the history is now
+     * shorter than the offset it was replaced since, and 0 is returned without reading anything.
+     */
+    public static long forEachRecordFrom(String username, long offset, Consumer<TransactionRecord> consumer) {
+        File file = fileFor(username);
+        if (file.length() < offset) {
+            return 0;
+        }
+        if (file.length() == offset) {
+            return offset;
+        }
+        long consumed = offset;
+        try (FileInputStream in = new FileInputStream(file)) {
+            in.getChannel().position(offset);
+            byte[] buffer = new byte[1 << 16];
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = offset; // file offset of buffer[0]
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != '\n') continue;
+                    line.write(buffer, lineStart, i - lineStart);
+                    String text = line.toString(Charset.defaultCharset()).trim();
+                    line.reset();
+                    if (!text.isEmpty()) {
+                        TransactionRecord record = TransactionRecord.fromString(text);
+                        if (record != null) {
+                            consumer.accept(record);
+                        }
+                    }
+                    lineStart = i + 1;
+                    consumed = position + lineStart;
+                }
+                line.write(buffer, lineStart, read - lineStart);
+                position += read;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading transaction history for " + username + ": " + e.getMessage());
+        }
+        return consumed;
+    }
+
+    /**
+     * Returns up to limit of the last non-blank lines of a user's history, newest first. The file is read
+     * backwards from its end, so the cost depends on limit rather than on the length of the history.
+     * A final line without its newline is still being written and is left out.
+     */
+    public static List<String> readLastLines(String username, int limit) {
+        List<String> lines = new ArrayList<>();
+        File file = fileFor(username);
+        if (limit <= 0 || !file.exists()) {
+            return lines;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer chunk = ByteBuffer.allocate(TAIL_CHUNK);
+            long position = channel.size();
+            long lineEnd = -1; // offset of the newline that ends the line being scanned
+            while (position > 0 && lines.size() < limit) {
+                int length = (int) Math.min(TAIL_CHUNK, position);
+                position -= length;
+                chunk.clear().limit(length);
+                readFully(channel, chunk, position);
+                for (int i = length - 1; i >= 0 && lines.size() < limit; i--) {
+                    if (chunk.get(i) != '\n') continue;
+                    if (lineEnd >= 0) {
+                        addLine(channel, position + i + 1, lineEnd, lines);
+                    }
+                    lineEnd = position + i;
+                }
+            }
+            // The first line of the file has no newline before it
+            if (position == 0 && lineEnd > 0 && lines.size() < limit) {
+                addLine(channel, 0, lineEnd, lines);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading transaction history for " + username + ": " + e.getMessage());
+        }
+        return lines;
+    }
+
+    private static void addLine(FileChannel channel, long from, long to, List<String> lines) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) (to - from));
+        readFully(channel, bytes, from);
+        String line = new String(bytes.array(), 0, bytes.position(), Charset.defaultCharset()).trim();
+        if (!line.isEmpty()) {
+            lines.add(line);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) < 0) break;
+        }
+    }
+
+    /**
+     * Appends one line to a user's history
+     */
+    public static void append(String username, String line) throws IOException {
+        long start = System.nanoTime();
+        BankEvents.HistoryWrite event = new BankEvents.HistoryWrite();
+        event.begin();
+        try (FileWriter writer = new FileWriter(fileFor(username), true)) {
+            writer.write(line + "\n");
+        } finally {
+            appendTimer.record(System.nanoTime() - start);
+        }
+        linesAppended.increment();
+        commitWrite(event, username, 1, line.length() + 1);
+    }
+
+    /**
+     * Appends many lines to a user's history in one buffered write. If the write fails, the file is cut back
+     * to its previous length, so either all of the lines are in the history or none are.
+     */
+    public static void appendAll(String username, List<String> lines) throws IOException {
+        long start = System.nanoTime();
+        BankEvents.HistoryWrite event = new BankEvents.HistoryWrite();
+        event.begin();
+        File file = fileFor(username);
+        long lengthBefore = file.length();
+        long chars = 0;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, true), 1 << 16)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+                chars += line.length() + 1;
+            }
+        } catch (IOException e) {
+            if (file.length() > lengthBefore) {
+                truncate(file, lengthBefore);
+            }
+            throw e;
+        } finally {
+            appendTimer.record(System.nanoTime() - start);
+        }
+        linesAppended.add(lines.size());
+        commitWrite(event, username, lines.size(), chars);
+    }
+
+    private static void truncate(File file, long length) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        } catch (IOException e) {
+            System.err.println("Could not undo a partial write to " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static void commitWrite(BankEvents.HistoryWrite event, String username, int records, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.username = username;
+            event.records = records;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Transaction history table backed by a HistoryIndex. Only the rows Swing asks for are read from disk
+ * and parsed; clicking a column header sorts by that column (click again to reverse). Sorting reads the
+ * whole file, so it runs in the background and the rows are reordered when it finishes.
+ */
+public class HistoryTable extends JTable {
+    private final HistoryTableModel model;
+
+    public HistoryTable() {
+        super(new HistoryTableModel());
+        model = (HistoryTableModel) getModel();
+        setFont(new Font("Monospaced", Font.PLAIN, 12));
+        setFillsViewportHeight(true);
+        getTableHeader().setReorderingAllowed(false);
+
+        DefaultTableCellRenderer moneyRenderer = new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                setText(value instanceof Double ? String.format("$%,.2f", (Double) value) : "");
+            }
+        };
+        moneyRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+        getColumnModel().getColumn(HistoryTableModel.AMOUNT).setCellRenderer(moneyRenderer);
+        getColumnModel().getColumn(HistoryTableModel.BALANCE).setCellRenderer(moneyRenderer);
+
+        getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = columnAtPoint(e.getPoint());
+                if (column >= 0) {
+                    model.toggleSort(convertColumnIndexToModel(column));
+                    updateHeaders();
+                }
+            }
+        });
+        updateHeaders();
+    }
+
+    /**
+     * Shows the given history, newest first. Pass null to clear the table.
+     */
+    public void setIndex(HistoryIndex index) {
+        model.setIndex(index);
+        updateHeaders();
+    }
+
+    /**
+     * Picks up lines appended to the underlying file since it was indexed.
+     */
+    public void refresh() {
+        model.refresh();
+    }
+
+    private void updateHeaders() {
+        for (int i = 0; i < HistoryTableModel.COLUMNS.length; i++) {
+            String name = HistoryTableModel.COLUMNS[i];
+            if (i == model.getSortColumn()) {
+                name += model.isAscending() ? " ▲" : " ▼";
+            }
+            getColumnModel().getColumn(convertColumnIndexToView(i)).setHeaderValue(name);
+        }
+        getTableHeader().repaint();
+    }
+}
+
+class HistoryTableModel extends AbstractTableModel {
+    static final String[] COLUMNS = {"Time", "Type", "Amount", "Balance"};
+    static final int TIME = 0;
+    static final int TYPE = 1;
+    static final int AMOUNT = 2;
+    static final int BALANCE = 3;
+
+    private static final int CACHE_ROWS = 512;
+
+    private HistoryIndex index;
+    private int[] order; // view row -> file row, null means newest first
+    private int sortColumn = TIME;
+    private boolean ascending = false;
+    // Bumped by every sort and index change; a background sort is applied only if it is still the latest
+    private int sortGeneration;
+
+    // Parsed rows recently shown, keyed by file row
+    private final Map<Integer, Object[]> cache = new LinkedHashMap<Integer, Object[]>(CACHE_ROWS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+            return size() > CACHE_ROWS;
+        }
+    };
+
+    void setIndex(HistoryIndex index) {
+        if (this.index != null && this.index != index) {
+            this.index.close();
+        }
+        this.index = index;
+        cache.clear();
+        sortColumn = TIME;
+        ascending = false;
+        order = null;
+        sortGeneration++;
+        fireTableDataChanged();
+    }
+
+    void refresh() {
+        if (index != null && index.refresh() > 0) {
+            // Re-apply a custom sort, which shows the new rows when it finishes; newest-first needs no work
+            if (order != null) {
+                sort();
+            } else {
+                fireTableDataChanged();
+            }
+        }
+    }
+
+    int getSortColumn() {
+        return sortColumn;
+    }
+
+    boolean isAscending() {
+        return ascending;
+    }
+
+    void toggleSort(int column) {
+        // A new column starts descending (newest, largest first)
+        ascending = column == sortColumn && !ascending;
+        sortColumn = column;
+        if (index != null) {
+            sort();
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        // A sorted view keeps its rows until the next sort takes in the appended ones
+        return index == null ? 0 : order != null ? order.length : index.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == AMOUNT || column == BALANCE ? Double.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int row = order != null ? order[rowIndex] : index.size() - 1 - rowIndex;
+        Object[] cells = cache.get(row);
+        if (cells == null) {
+            cells = parse(index.readLine(row));
+            cache.put(row, cells);
+        }
+        return cells[columnIndex];
+    }
+
+    private static Object[] parse(String line) {
+        TransactionRecord record = TransactionRecord.fromString(line);
+        if (record == null) {
+            return new Object[]{line, "", null, null};
+        }
+        return new Object[]{record.getTimestamp(), record.getType(), record.getAmount(), parseBalance(line)};
+    }
+
+    private static Double parseBalance(String line) {
+        int at = line.indexOf(TransactionRecord.BALANCE_MARKER);
+        if (at < 0) return null;
+        try {
+            return Double.parseDouble(line.substring(at + TransactionRecord.BALANCE_MARKER.length(), TransactionRecord.balanceEnd(line))
+                    .trim().replace(",", ""));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Sorts the rows indexed so far on a worker thread; the current order stays on screen until it is done
+    private void sort() {
+        HistoryIndex sorting = index;
+        int rows = sorting.size();
+        int column = sortColumn;
+        boolean ascendingOrder = ascending;
+        int generation = ++sortGeneration;
+        new SwingWorker<int[], Void>() {
+            @Override
+            protected int[] doInBackground() {
+                return sortedRows(sorting, rows, column, ascendingOrder);
+            }
+
+            @Override
+            protected void done() {
+                if (generation != sortGeneration) return;
+                try {
+                    order = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Error sorting history: " + e.getMessage());
+                    return;
+                }
+                fireTableDataChanged();
+            }
+        }.execute();
+    }
+
+    /**
+     * Builds one primitive key per row in a single sequential pass, then sorts row numbers by key.
+     */
+    private static int[] sortedRows(HistoryIndex index, int rows, int column, boolean ascending) {
+        double[] keys = new double[rows];
+        index.forEachLine(rows, (row, line) -> keys[row] = sortKey(line, column));
+
+        int[] sorted = IndexSort.sortedPositions(rows, (a, b) -> Double.compare(keys[a], keys[b]));
+        if (!ascending) {
+            for (int i = 0, j = rows - 1; i < j; i++, j--) {
+                int t = sorted[i];
+                sorted[i] = sorted[j];
+                sorted[j] = t;
+            }
+        }
+        return sorted;
+    }
+
+    private static double sortKey(String line, int column) {
+        switch (column) {
+            case TIME:
+                // "[yyyy-MM-dd HH:mm:ss]" as the number yyyyMMddHHmmss keeps chronological order
+                double key = 0;
+                for (int i = 1; i < line.length() && line.charAt(i) != ']'; i++) {
+                    char c = line.charAt(i);
+                    if (c >= '0' && c <= '9') key = key * 10 + (c - '0');
+                }
+                return key;
+            case TYPE:
+                return line.contains("] Deposit:") ? 0 : line.contains("] Withdrawal:") ? 1 : 2;
+            case AMOUNT:
+                int start = line.indexOf(": $");
+                if (start < 0) return 0;
+                int end = line.indexOf(TransactionRecord.BALANCE_MARKER, start);
+                try {
+                    return Double.parseDouble(line.substring(start + 3, end < 0 ? TransactionRecord.balanceEnd(line) : end)
+                            .trim().replace(",", ""));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            default:
+                Double balance = parseBalance(line);
+                return balance == null ? 0 : balance;
+        }
+    }
+}
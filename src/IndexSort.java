@@ -0,0 +1,33 @@
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Stable merge sort of positions 0..n-1, for sorting rows by precomputed primitive or string keys
+ * without boxing them. The comparator receives two positions and compares their keys.
+ */
+final class IndexSort {
+    private IndexSort() {
+    }
+
+    static int[] sortedPositions(int n, IntBinaryOperator compare) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[n], 0, n, compare);
+        return order;
+    }
+
+    private static void mergeSort(int[] order, int[] buffer, int from, int to, IntBinaryOperator compare) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, from, mid, compare);
+        mergeSort(order, buffer, mid, to, compare);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            buffer[k++] = compare.applyAsInt(order[j], order[i]) < 0 ? order[j++] : order[i++];
+        }
+        while (i < mid) buffer[k++] = order[i++];
+        while (j < to) buffer[k++] = order[j++];
+        System.arraycopy(buffer, from, order, from, to - from);
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets: every power of two is split into
+ * SUB_BUCKETS linear steps, so percentiles are accurate to about 1 / SUB_BUCKETS (~6%).
+ * Recording is a couple of atomic increments and safe from any number of threads.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one measurement in nanoseconds; negative values count as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        total.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public double getMeanNanos() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Returns an upper bound of the given quantile (0..1) in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long quantileNanos(double q) {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(q * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%,d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                getCount(), getMeanNanos() / 1000, quantileNanos(0.5) / 1000.0, quantileNanos(0.9) / 1000.0,
+                quantileNanos(0.99) / 1000.0, quantileNanos(0.999) / 1000.0, getMaxNanos() / 1000.0);
+    }
+
+    // Values below SUB_BUCKETS get one bucket each; above, the top SUB_BUCKET_BITS bits below the
+    // highest set bit pick the step within that power of two
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        int sub = (int) (value >>> (exponent - 1)) & (SUB_BUCKETS - 1);
+        return exponent * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS;
+        long sub = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - 1)) - 1;
+    }
+}
@@ -0,0 +1,337 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams the transaction ledger from the history files to a CSV or JSON Lines file through NIO channels.
+ * Input is read and output written in fixed-size buffers, so memory use does not grow with the ledger.
+ */
+public class LedgerExporter {
+    public enum Format { CSV, JSON_LINES }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Which records to export; null fields match everything.
+     */
+    public static class Filter {
+        private final String username;
+        private final String type;
+        private final String from; // inclusive, "yyyy-MM-dd HH:mm:ss" compares chronologically as text
+        private final String to;   // exclusive
+
+        public Filter(String username, String type, LocalDateTime from, LocalDateTime to) {
+            this.username = username;
+            this.type = type;
+            this.from = from == null ? null : from.format(TIMESTAMP);
+            this.to = to == null ? null : to.format(TIMESTAMP);
+        }
+    }
+
+    /**
+     * Receives progress as history bytes are read; return false to cancel the export.
+     */
+    public interface Progress {
+        boolean update(long bytesRead, long totalBytes);
+    }
+
+    public static class Result {
+        private final long rows;
+        private final long skipped;
+        private final long bytesWritten;
+        private final boolean cancelled;
+
+        Result(long rows, long skipped, long bytesWritten, boolean cancelled) {
+            this.rows = rows;
+            this.skipped = skipped;
+            this.bytesWritten = bytesWritten;
+            this.cancelled = cancelled;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * History lines that could not be read as a transaction, and so were left out of the export.
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Exports the matching records of every user (or the filtered one), users in name order and each
+     * history oldest first. A cancelled or failed export deletes the partial file.
+     */
+    public static Result export(File target, Format format, Filter filter, Progress progress) throws IOException {
+        List<String> users = new ArrayList<>();
+        if (filter.username != null) {
+            users.add(filter.username);
+        } else {
+            users.addAll(UserManager.getAllUsers());
+            Collections.sort(users);
+        }
+        long totalBytes = 0;
+        for (String user : users) {
+            totalBytes += HistoryStore.fileFor(user).length();
+        }
+
+        Writer writer = new Writer(target, format);
+        boolean completed = false;
+        try {
+            if (format == Format.CSV) {
+                writer.append("username,timestamp,type,amount,balance,id\n");
+            }
+            // One input buffer for the whole export; direct buffers are costly to allocate and slow to free
+            ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long bytesRead = 0;
+            for (String user : users) {
+                File file = HistoryStore.fileFor(user);
+                if (!file.exists()) continue;
+                in.clear();
+                long read = exportUser(file, user, filter, in, writer, bytesRead, totalBytes, progress);
+                if (read < 0) {
+                    return new Result(writer.rows, writer.skipped, 0, true);
+                }
+                bytesRead += read;
+            }
+            writer.finish();
+            progress.update(totalBytes, totalBytes);
+            completed = true;
+        } finally {
+            writer.close();
+            if (!completed) {
+                target.delete();
+            }
+        }
+        return new Result(writer.rows, writer.skipped, writer.bytesWritten, false);
+    }
+
+    // Returns the bytes read, or -1 if cancelled
+    private static long exportUser(File file, String user, Filter filter, ByteBuffer in, Writer writer,
+                                   long bytesBefore, long totalBytes, Progress progress) throws IOException {
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        long read = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int n;
+            while ((n = channel.read(in)) != -1) {
+                in.flip();
+                while (in.hasRemaining()) {
+                    byte b = in.get();
+                    if (b == '\n') {
+                        writeRecord(new String(line, 0, lineLength, StandardCharsets.UTF_8).trim(), user, filter, writer);
+                        lineLength = 0;
+                    } else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, lineLength * 2);
+                        }
+                        line[lineLength++] = b;
+                    }
+                }
+                in.clear();
+                read += n;
+                if (!progress.update(bytesBefore + read, totalBytes)) {
+                    return -1;
+                }
+            }
+            if (lineLength > 0) {
+                writeRecord(new String(line, 0, lineLength, StandardCharsets.UTF_8).trim(), user, filter, writer);
+            }
+        }
+        return read;
+    }
+
+    // "[2023-01-01 12:00:00] Deposit: $1,000.00 - Balance: $5,000.00 - ID: 5f0c..." (older lines have no ID)
+    private static void writeRecord(String line, String user, Filter filter, Writer writer) throws IOException {
+        if (line.isEmpty()) return;
+        int close = line.indexOf("] ");
+        int colon = close < 0 ? -1 : line.indexOf(": $", close);
+        if (!line.startsWith("[") || colon < 0) {
+            writer.skipped++;
+            return;
+        }
+
+        String timestamp = line.substring(1, close);
+        if (filter.from != null && timestamp.compareTo(filter.from) < 0) return;
+        if (filter.to != null && timestamp.compareTo(filter.to) >= 0) return;
+        String type = line.substring(close + 2, colon);
+        if (filter.type != null && !filter.type.equals(type)) return;
+
+        int lineEnd = TransactionRecord.balanceEnd(line);
+        int balanceAt = line.indexOf(TransactionRecord.BALANCE_MARKER, colon);
+        int amountEnd = balanceAt < 0 ? lineEnd : balanceAt;
+        String id = lineEnd < line.length() ? TransactionRecord.idOf(line) : null;
+        long amount = parseCents(line, colon + 3, amountEnd);
+        long balance = balanceAt < 0 ? 0 : parseCents(line, balanceAt + TransactionRecord.BALANCE_MARKER.length(), lineEnd);
+        if (amount == AmountParser.INVALID || balance == AmountParser.INVALID) {
+            writer.skipped++;
+            return;
+        }
+        StringBuilder row = writer.row;
+        row.setLength(0);
+        if (writer.format == Format.CSV) {
+            appendCsv(row, user);
+            row.append(',').append(timestamp).append(',');
+            appendCsv(row, type);
+            row.append(',');
+            appendCents(row, amount);
+            row.append(',');
+            if (balanceAt >= 0) appendCents(row, balance);
+            row.append(',');
+            if (id != null) appendCsv(row, id);
+        } else {
+            row.append("{\"user\":");
+            appendJson(row, user);
+            row.append(",\"timestamp\":\"").append(timestamp).append("\",\"type\":");
+            appendJson(row, type);
+            row.append(",\"amount\":");
+            appendCents(row, amount);
+            row.append(",\"balance\":");
+            if (balanceAt >= 0) {
+                appendCents(row, balance);
+            } else {
+                row.append("null");
+            }
+            row.append(",\"id\":");
+            if (id != null) {
+                appendJson(row, id);
+            } else {
+                row.append("null");
+            }
+            row.append('}');
+        }
+        row.append('\n');
+        writer.append(row);
+        writer.rows++;
+    }
+
+    // Histories are written with the default locale's separators; lines from a '.'-decimal locale are read too
+    private static long parseCents(String line, int from, int to) {
+        CharSequence text = CharBuffer.wrap(line, from, to);
+        long cents = AmountParser.parseCents(text);
+        return cents != AmountParser.INVALID ? cents : AmountParser.parseCents(text, '.', ',');
+    }
+
+    // Plain decimal with two places and no grouping, so amounts stay exact
+    private static void appendCents(StringBuilder row, long cents) {
+        long abs = Math.abs(cents);
+        if (cents < 0) row.append('-');
+        row.append(abs / 100).append('.');
+        long fraction = abs % 100;
+        if (fraction < 10) row.append('0');
+        row.append(fraction);
+    }
+
+    private static void appendCsv(StringBuilder row, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') row.append('"');
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    private static void appendJson(StringBuilder row, String value) {
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                row.append('\\').append(c);
+            } else if (c < 0x20) {
+                row.append(String.format("\\u%04x", (int) c));
+            } else {
+                row.append(c);
+            }
+        }
+        row.append('"');
+    }
+
+    // Encodes rows into one reused buffer and writes it to the channel whenever it fills
+    private static class Writer {
+        private final Format format;
+        private final FileChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final StringBuilder row = new StringBuilder(128);
+        private long rows;
+        private long skipped;
+        private long bytesWritten;
+
+        Writer(File target, Format format) throws IOException {
+            this.format = format;
+            this.channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void append(CharSequence text) throws IOException {
+            encode(CharBuffer.wrap(text), false);
+        }
+
+        /**
+         * Ends the output: tells the encoder no more input follows and writes whatever it still holds.
+         */
+        void finish() throws IOException {
+            encode(CharBuffer.allocate(0), true);
+            while (encoder.flush(out).isOverflow()) {
+                flush();
+            }
+            flush();
+        }
+
+        private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+            while (true) {
+                CoderResult result = encoder.encode(chars, out, endOfInput);
+                if (result.isOverflow()) {
+                    flush();
+                } else if (result.isError()) {
+                    result.throwException();
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                bytesWritten += channel.write(out);
+            }
+            out.clear();
+        }
+
+        void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -1,6 +1,14 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.font.FontRenderContext;
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Main {
     // Application constants
@@ -10,30 +18,163 @@ public class Main {
     // Default application settings
     private static boolean defaultDarkMode = true;
 
+    // Startup progress, shared between the init stages and the splash screen
+    private static final int STARTUP_STAGES = 4;
+    private static final AtomicInteger completedStages = new AtomicInteger();
+    private static volatile String lastStage = "Starting";
+    private static JWindow splashScreen;
+    private static JProgressBar splashProgress;
+    private static JLabel splashStatus;
+
     public static void main(String[] args) {
-        // Set the look and feel to the system default
-        try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        } catch (Exception e) {
-            System.err.println("Could not set system look and feel: " + e.getMessage());
+        List<String> options = Arrays.asList(args);
+        // Several processes (GUI windows, servers) may then work on the same accounts at once
+        if (options.contains("--shared-store")) {
+            initializeDirectories();
+            if (!UserManager.useSharedStore()) {
+                System.exit(1);
+            }
+        }
+        if (options.contains("--server")) {
+            runServer(options);
+            return;
+        }
+        if (options.contains("--simulate")) {
+            initializeDirectories();
+            WorkloadSimulator.run(options);
+            return;
+        }
+        int importAt = options.indexOf("--import");
+        if (importAt >= 0) {
+            runImport(importAt + 1 < options.size() ? options.get(importAt + 1) : null);
+            return;
         }
+        int reshardAt = options.indexOf("--reshard");
+        if (reshardAt >= 0) {
+            runReshard(reshardAt + 1 < options.size() ? options.get(reshardAt + 1) : null);
+            return;
+        }
+        long mainStart = System.nanoTime();
 
         // Create application directories if they don't exist
         initializeDirectories();
 
-        // Load any application settings
-        loadSettings();
+        // Independent init stages run in parallel with the look and feel below
+        List<CompletableFuture<Void>> stages = new ArrayList<>();
+        stages.add(CompletableFuture.runAsync(() -> runStage("Account store", () ->
+                System.out.println("Loaded " + UserManager.getAllUsers().size() + " accounts from "
+                        + UserManager.getShardCount() + " shards"))));
+        stages.add(CompletableFuture.runAsync(() -> runStage("Settings", Main::loadSettings)));
+        stages.add(CompletableFuture.runAsync(() -> runStage("Fonts", Main::setupFonts)));
+
+        // Look and feel on this thread; it must be in place before the first component is built
+        runStage("Look and feel", () -> {
+            try {
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (Exception e) {
+                System.err.println("Could not set system look and feel: " + e.getMessage());
+            }
+            ThemeManager.install();
+            ThemeManager.setDarkMode(defaultDarkMode);
+        });
+        SwingUtilities.invokeLater(Main::showSplashScreen);
+
+        CompletableFuture.allOf(stages.toArray(new CompletableFuture<?>[0])).join();
 
-        // Set up custom fonts
-        setupFonts();
+        // Compare stored balances with the transaction histories
+        reconcileBalances(options.contains("--repair-balances"));
 
-        // Create and display the login screen on the Event Dispatch Thread
+        // Create the login screen on the Event Dispatch Thread; the splash closes once it is up
         SwingUtilities.invokeLater(() -> {
-            showSplashScreen();
             new LoginScreen();
+            if (splashScreen != null) {
+                splashScreen.dispose();
+            }
+            // Queued behind the login screen's first paint
+            SwingUtilities.invokeLater(() -> {
+                long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+                System.out.printf("Startup: login ready %d ms after main(), %d ms after JVM start%n",
+                        (System.nanoTime() - mainStart) / 1_000_000, System.currentTimeMillis() - jvmStart);
+            });
         });
     }
 
+    // Headless mode: serve the accounts over HTTP on loopback until the process is stopped
+    private static void runServer(List<String> options) {
+        initializeDirectories();
+        loadSettings();
+        reconcileBalances(options.contains("--repair-balances"));
+
+        int port = BankHttpServer.DEFAULT_PORT;
+        int portAt = options.indexOf("--port");
+        if (portAt >= 0 && portAt + 1 < options.size()) {
+            try {
+                port = Integer.parseInt(options.get(portAt + 1));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid port '" + options.get(portAt + 1) + "', using " + port);
+            }
+        }
+        try {
+            BankHttpServer server = new BankHttpServer(port);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "server-shutdown"));
+        } catch (IOException e) {
+            System.err.println("Could not start server on port " + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Headless mode: replay a CSV of historical transactions, then exit
+    private static void runImport(String path) {
+        if (path == null || !new File(path).isFile()) {
+            System.err.println("Usage: --import <transactions.csv>");
+            System.exit(1);
+        }
+        initializeDirectories();
+        try {
+            System.out.print(BulkImporter.importFile(new File(path)));
+        } catch (IOException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Moves the accounts into a different number of store shards, then exits
+    private static void runReshard(String count) {
+        int shards;
+        try {
+            shards = Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            shards = 0;
+        }
+        if (shards < 1 || UserManager.isSharedStore()) {
+            System.err.println("Usage: --reshard <shard count> (not with --shared-store)");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        int from = UserManager.getShardCount();
+        if (!UserManager.reshard(shards)) {
+            System.err.println("Reshard failed; the store still has " + from + " shards");
+            System.exit(1);
+        }
+        System.out.printf("Moved %d accounts from %d to %d shards in %d ms%n", UserManager.getAllUsers().size(),
+                from, shards, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Runs one init stage, logs its duration and advances the splash; failures are logged, not fatal
+    private static void runStage(String name, Runnable work) {
+        long start = System.nanoTime();
+        try {
+            work.run();
+        } catch (RuntimeException e) {
+            System.err.println("Startup stage '" + name + "' failed: " + e.getMessage());
+        }
+        System.out.printf("Startup: %s took %d ms%n", name, (System.nanoTime() - start) / 1_000_000);
+        lastStage = name;
+        completedStages.incrementAndGet();
+        SwingUtilities.invokeLater(Main::updateSplash);
+    }
+
     private static void initializeDirectories() {
         // Create a data directory if it doesn't exist
         File dataDir = new File("data");
@@ -63,12 +204,33 @@ public class Main {
     }
 
     private static void setupFonts() {
-        //Future use for custom fonts
+        // Load the fonts the windows use and lay out some text, so the first paint does not pay for it
+        FontRenderContext context = new FontRenderContext(null, true, true);
+        Font[] fonts = {ThemeManager.HEADER_FONT, ThemeManager.STANDARD_FONT, ThemeManager.MONO_FONT,
+                new Font("SansSerif", Font.BOLD, 14), new Font("SansSerif", Font.ITALIC, 14)};
+        for (Font font : fonts) {
+            font.getStringBounds(APP_NAME + " $0123456789,.", context);
+        }
+    }
+
+    private static void reconcileBalances(boolean repair) {
+        Runnable task = () -> {
+            BalanceReconciler.Report report = BalanceReconciler.reconcile(repair);
+            System.out.print(report);
+        };
+        if (repair) {
+            // Repairs must finish before any window can write balances
+            task.run();
+        } else {
+            Thread thread = new Thread(task, "balance-reconciler");
+            thread.setDaemon(true);
+            thread.start();
+        }
     }
 
     private static void showSplashScreen() {
-        // Create and display a splash screen for 2 seconds
-        JWindow splashScreen = new JWindow();
+        // Stays up until the login screen is ready, showing the init stages as they finish
+        splashScreen = new JWindow();
         splashScreen.setSize(400, 300);
         splashScreen.setLocationRelativeTo(null);
 
@@ -84,24 +246,33 @@ public class Main {
         version.setFont(new Font("SansSerif", Font.PLAIN, 14));
         version.setForeground(Color.LIGHT_GRAY);
 
-        JLabel loading = new JLabel("Loading...", SwingConstants.CENTER);
-        loading.setFont(new Font("SansSerif", Font.ITALIC, 12));
-        loading.setForeground(Color.LIGHT_GRAY);
+        splashStatus = new JLabel("Loading...", SwingConstants.CENTER);
+        splashStatus.setFont(new Font("SansSerif", Font.ITALIC, 12));
+        splashStatus.setForeground(Color.LIGHT_GRAY);
 
         JPanel centerPanel = new JPanel(new GridLayout(3, 1));
         centerPanel.setBackground(new Color(40, 40, 40));
         centerPanel.add(title);
         centerPanel.add(version);
-        centerPanel.add(loading);
+        centerPanel.add(splashStatus);
+
+        splashProgress = new JProgressBar(0, STARTUP_STAGES);
+        splashProgress.setForeground(new Color(0, 102, 204));
+        splashProgress.setBorder(BorderFactory.createEmptyBorder(0, 20, 20, 20));
+        splashProgress.setOpaque(false);
 
         content.add(centerPanel, BorderLayout.CENTER);
+        content.add(splashProgress, BorderLayout.SOUTH);
         splashScreen.setContentPane(content);
+        updateSplash();
         splashScreen.setVisible(true);
+    }
 
-        // Close the splash screen after 2 seconds
-        Timer timer = new Timer(2000, e -> splashScreen.dispose());
-        timer.setRepeats(false);
-        timer.start();
+    private static void updateSplash() {
+        if (splashScreen == null) return;
+        int done = completedStages.get();
+        splashProgress.setValue(done);
+        splashStatus.setText(done < STARTUP_STAGES ? "Loaded " + lastStage.toLowerCase() + "..." : "Starting...");
     }
 
     // Static utility methods that might be useful throughout the application
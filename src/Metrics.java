@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide latency histograms and counters for the core operations.
+ * Callers look their timer up once and keep it in a static final field; recording is then a
+ * pair of System.nanoTime() calls and a few atomic increments, with no locking.
+ */
+public class Metrics {
+    public static final String UPDATE_BALANCE = "UserManager.updateBalance";
+    public static final String SAVE_USERS = "AccountShard.save";
+    public static final String SAVE_ROLLUPS = "RollupStore.save";
+    public static final String HISTORY_APPEND = "HistoryStore.append";
+    public static final String PARSE_RECORD = "TransactionRecord.fromString";
+    public static final String TRANSACTION = "AccountService.transaction";
+    public static final String ADMIN_REFRESH = "AdminPanel.refresh";
+
+    private static final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static volatile long since = System.nanoTime();
+
+    public static LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    public static List<String> timerNames() {
+        List<String> names = new ArrayList<>(timers.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    public static List<String> counterNames() {
+        List<String> names = new ArrayList<>(counters.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Seconds since startup or the last reset.
+     */
+    public static double getElapsedSeconds() {
+        return (System.nanoTime() - since) / 1e9;
+    }
+
+    /**
+     * Clears every timer and counter. Measurements racing with the reset may land on either side of it.
+     */
+    public static void reset() {
+        for (LatencyHistogram timer : timers.values()) {
+            timer.reset();
+        }
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        since = System.nanoTime();
+    }
+
+    /**
+     * Plain-text table of every timer and counter, for logs and exported snapshots.
+     */
+    public static String snapshot() {
+        double elapsed = getElapsedSeconds();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%s metrics over %.1f s (%s)%n", Main.APP_NAME, elapsed,
+                java.time.LocalDateTime.now().withNano(0)));
+        sb.append(String.format(Locale.ROOT, "%-30s %10s %9s %10s %10s %10s %10s %10s%n",
+                "timer", "count", "ops/s", "mean ms", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        for (String name : timerNames()) {
+            LatencyHistogram h = timers.get(name);
+            sb.append(String.format(Locale.ROOT, "%-30s %10d %9.1f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    name, h.getCount(), elapsed > 0 ? h.getCount() / elapsed : 0, h.getMeanNanos() / 1e6,
+                    h.quantileNanos(0.5) / 1e6, h.quantileNanos(0.99) / 1e6, h.quantileNanos(0.999) / 1e6,
+                    h.getMaxNanos() / 1e6));
+        }
+        List<String> counterNames = counterNames();
+        if (!counterNames.isEmpty()) {
+            sb.append(String.format(Locale.ROOT, "%n%-30s %10s%n", "counter", "value"));
+            for (String name : counterNames) {
+                sb.append(String.format(Locale.ROOT, "%-30s %10d%n", name, counters.get(name).sum()));
+            }
+        }
+        return sb.toString();
+    }
+}
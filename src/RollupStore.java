@@ -0,0 +1,477 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Hourly transaction aggregates per user and bank-wide, maintained as transactions are logged.
+ * Queries fold the hourly buckets into any bucket size, so dashboards never re-read history files.
+ * <p>
+ * Each transaction is appended to a journal (data/rollups.log) rather than rewriting the store. Once the
+ * journal passes COMPACT_BYTES, the aggregates are written out as a snapshot (data/rollups.dat) and a new
+ * journal is started; loading reads the snapshot and replays the journal. Both files carry a generation
+ * number, so a journal that a crash left behind after its snapshot was written is not replayed twice.
+ * <p>
+ * Several processes may share the files (see UserManager.useSharedStore). Every operation holds a lock on
+ * the journal and first applies whatever other processes appended since; after another process compacted,
+ * the journal's generation has moved on and the snapshot is loaded again. The journal is therefore reset in
+ * place rather than replaced, so that every process keeps locking the same file. Seeding the aggregates from
+ * the histories (on first start, or when the snapshot is unreadable) assumes no transactions are in flight.
+ * If the journal cannot be locked or read, nothing is recorded and the aggregates are rebuilt from the
+ * histories by the next transaction recorded; that too assumes no others are in flight.
+ *
+ * <pre>
+ * snapshot: generation of the last journal included (8) | serialized map
+ * journal:  generation (8) | records of name length (2) | username (UTF-8) | hour (8) | deposit (1) | amount (8)
+ * </pre>
+ */
+public class RollupStore {
+    // Key under which the bank-wide aggregates are kept
+    public static final String BANK_KEY = "*";
+
+    private static final String DATA_FILE = "data/rollups.dat";
+    private static final String JOURNAL_FILE = "data/rollups.log";
+    private static final long COMPACT_BYTES = 8L << 20;
+    private static final long SECONDS_PER_HOUR = 3600;
+
+    private static Map<String, TreeMap<Long, Bucket>> rollups = new HashMap<>();
+    private static final LatencyHistogram saveTimer = Metrics.timer(Metrics.SAVE_ROLLUPS);
+    // Guards everything; held across journal writes, so a lock rather than a monitor that would pin virtual threads
+    private static final ReentrantLock lock = new ReentrantLock();
+
+    // Generation of the journal being applied; the snapshot covers every earlier one. -1 until loaded.
+    private static long generation = -1;
+    // Open for the process's lifetime; null if it could not be opened or written
+    private static FileChannel journal;
+    // How much of the journal is reflected in rollups
+    private static long journalBytes;
+    // Set when transactions could not be recorded; the next operation that gets the journal rebuilds from history
+    private static boolean missedRecords;
+    // Records of the current call, written to the journal in one piece
+    private static final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+    private static final DataOutputStream pending = new DataOutputStream(pendingBytes);
+
+    static {
+        openJournal();
+        try {
+            withStore(() -> {
+                if (journal == null && !loadSnapshot()) {
+                    rebuild();
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            System.err.println("Could not load rollups: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Aggregates for one time bucket. Deposits count as inflow, withdrawals as outflow.
+     */
+    public static class Bucket implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final long startHour;
+        private long depositCount;
+        private long withdrawalCount;
+        private double inflow;
+        private double outflow;
+
+        Bucket(long startHour) {
+            this.startHour = startHour;
+        }
+
+        void add(String type, double amount) {
+            if (type.equals("Deposit")) {
+                depositCount++;
+                inflow += amount;
+            } else if (type.equals("Withdrawal")) {
+                withdrawalCount++;
+                outflow += amount;
+            }
+        }
+
+        void merge(Bucket other) {
+            depositCount += other.depositCount;
+            withdrawalCount += other.withdrawalCount;
+            inflow += other.inflow;
+            outflow += other.outflow;
+        }
+
+        public LocalDateTime getStart() {
+            return LocalDateTime.ofEpochSecond(startHour * SECONDS_PER_HOUR, 0, ZoneOffset.UTC);
+        }
+
+        public long getDepositCount() {
+            return depositCount;
+        }
+
+        public long getWithdrawalCount() {
+            return withdrawalCount;
+        }
+
+        public long getCount() {
+            return depositCount + withdrawalCount;
+        }
+
+        public double getInflow() {
+            return inflow;
+        }
+
+        public double getOutflow() {
+            return outflow;
+        }
+
+        public double getNet() {
+            return inflow - outflow;
+        }
+    }
+
+    /**
+     * Adds a transaction to the user's and the bank-wide hourly buckets and appends it to the journal.
+     */
+    public static void record(String username, String type, double amount, LocalDateTime timestamp) {
+        try {
+            withStore(() -> {
+                if (rebuildIfMissed()) return null;
+                addToBuckets(username, type, amount, timestamp);
+                addToJournal(username, type, amount, timestamp);
+                writeJournal();
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            missedRecord(e);
+        }
+    }
+
+    /**
+     * Adds many transactions, keyed by user, with one journal write, for bulk imports.
+     */
+    public static void recordAll(Map<String, List<TransactionRecord>> recordsByUser) {
+        try {
+            withStore(() -> {
+                if (rebuildIfMissed()) return null;
+                for (Map.Entry<String, List<TransactionRecord>> entry : recordsByUser.entrySet()) {
+                    for (TransactionRecord record : entry.getValue()) {
+                        addToBuckets(entry.getKey(), record.getType(), record.getAmount(), record.getTimestampDate());
+                        addToJournal(entry.getKey(), record.getType(), record.getAmount(), record.getTimestampDate());
+                    }
+                }
+                writeJournal();
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            missedRecord(e);
+        }
+    }
+
+    // Transactions are written to the history before they are recorded here, so after a failure the next
+    // caller's rebuild picks up the missed ones and its own, which it then must not add again
+    private static boolean rebuildIfMissed() {
+        if (!missedRecords) return false;
+        rebuild();
+        missedRecords = false;
+        return true;
+    }
+
+    private static void missedRecord(UncheckedIOException e) {
+        lock.lock();
+        try {
+            missedRecords = true;
+        } finally {
+            lock.unlock();
+        }
+        System.err.println("Rollups not updated (" + e.getMessage() + "); they will be rebuilt from history");
+    }
+
+    /**
+     * Returns consecutive buckets of bucketHours covering [from, to), including empty ones.
+     * Use BANK_KEY for bank-wide totals. Throws UncheckedIOException if the shared files cannot be read.
+     */
+    public static List<Bucket> query(String key, LocalDateTime from, LocalDateTime to, int bucketHours) {
+        if (bucketHours <= 0) throw new IllegalArgumentException("Bucket size must be positive.");
+
+        long fromHour = toHour(from);
+        long toHour = toHour(to);
+        List<Bucket> result = new ArrayList<>();
+        for (long start = fromHour; start < toHour; start += bucketHours) {
+            result.add(new Bucket(start));
+        }
+
+        return withStore(() -> {
+            TreeMap<Long, Bucket> hourly = rollups.get(key);
+            if (hourly != null && !result.isEmpty()) {
+                for (Bucket bucket : hourly.subMap(fromHour, true, toHour, false).values()) {
+                    result.get((int) ((bucket.startHour - fromHour) / bucketHours)).merge(bucket);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Discards the stored aggregates and recomputes them from every user's history file.
+     */
+    public static void rebuildFromHistory() {
+        withStore(() -> {
+            rebuild();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the action holding the lock and the journal's file lock, after applying other processes' records.
+     * If the journal cannot be locked or read, the action does not run and UncheckedIOException is thrown:
+     * it would otherwise work on stale aggregates, or append without keeping the other processes out.
+     */
+    private static <T> T withStore(Supplier<T> action) {
+        lock.lock();
+        try {
+            FileLock fileLock = null;
+            try {
+                if (journal != null) {
+                    fileLock = FileLocks.lock(journal);
+                    catchUp();
+                } else if (UserManager.isSharedStore()) {
+                    throw new IOException(JOURNAL_FILE + " is not open");
+                }
+            } catch (IOException e) {
+                // Partly replayed records are discarded: the next catch-up reloads the snapshot
+                generation = -1;
+                if (fileLock != null) {
+                    release(fileLock);
+                }
+                throw new UncheckedIOException("Error reading " + JOURNAL_FILE + ": " + e.getMessage(), e);
+            }
+            try {
+                return action.get();
+            } finally {
+                if (fileLock != null) {
+                    release(fileLock);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void release(FileLock fileLock) {
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            // released when the channel closes
+        }
+    }
+
+    private static void rebuild() {
+        rollups = new HashMap<>();
+        for (String username : UserManager.getAllUsers()) {
+            HistoryStore.forEachRecord(username, record ->
+                    addToBuckets(username, record.getType(), record.getAmount(), record.getTimestampDate()));
+        }
+        compact();
+    }
+
+    private static void addToBuckets(String username, String type, double amount, LocalDateTime timestamp) {
+        addToBuckets(username, toHour(timestamp), type, amount);
+    }
+
+    private static void addToBuckets(String username, long hour, String type, double amount) {
+        rollups.computeIfAbsent(username, k -> new TreeMap<>())
+                .computeIfAbsent(hour, Bucket::new).add(type, amount);
+        rollups.computeIfAbsent(BANK_KEY, k -> new TreeMap<>())
+                .computeIfAbsent(hour, Bucket::new).add(type, amount);
+    }
+
+    private static long toHour(LocalDateTime timestamp) {
+        return Math.floorDiv(timestamp.toEpochSecond(ZoneOffset.UTC), SECONDS_PER_HOUR);
+    }
+
+    private static void addToJournal(String username, String type, double amount, LocalDateTime timestamp) {
+        if (!type.equals("Deposit") && !type.equals("Withdrawal")) return;
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        try {
+            pending.writeShort(name.length);
+            pending.write(name);
+            pending.writeLong(toHour(timestamp));
+            pending.writeBoolean(type.equals("Deposit"));
+            pending.writeDouble(amount);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a ByteArrayOutputStream does not throw
+        }
+    }
+
+    // Appends the pending records, or writes a fresh snapshot if the journal is unusable or has grown large
+    private static void writeJournal() {
+        long start = System.nanoTime();
+        try {
+            if (journal != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(pendingBytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    journalBytes += journal.write(buffer, journalBytes);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending to " + JOURNAL_FILE + ": " + e.getMessage());
+            closeJournal();
+        } finally {
+            pendingBytes.reset();
+        }
+        if (journal == null || journalBytes > COMPACT_BYTES) {
+            compact();
+        }
+        saveTimer.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Brings the aggregates up to date with the files: replays records appended since the last look, or,
+     * if the journal belongs to another generation, reloads the snapshot first. Caller holds the file lock.
+     */
+    private static void catchUp() throws IOException {
+        long size = journal.size();
+        boolean known = size >= 8 && readJournal(0, 8).getLong() == generation;
+        if (!known) {
+            if (!loadSnapshot()) {
+                rebuild();
+                return;
+            }
+            journalBytes = 8;
+            if (size < 8 || readJournal(0, 8).getLong() != generation) {
+                // Already included in the snapshot, or unreadable
+                compact();
+                return;
+            }
+        }
+        if (size > journalBytes) {
+            long applied = replay(readJournal(journalBytes, (int) (size - journalBytes)));
+            if (journalBytes + applied < size) {
+                // The torn last record of a process that died while appending it
+                journal.truncate(journalBytes + applied);
+            }
+            journalBytes += applied;
+        }
+    }
+
+    // Applies the complete records in the buffer and returns how many bytes they took
+    private static long replay(ByteBuffer records) {
+        long applied = 0;
+        while (records.remaining() >= 2) {
+            int nameLength = Short.toUnsignedInt(records.getShort(records.position()));
+            if (records.remaining() < 2 + nameLength + 17) break;
+            records.getShort();
+            byte[] name = new byte[nameLength];
+            records.get(name);
+            long hour = records.getLong();
+            String type = records.get() != 0 ? "Deposit" : "Withdrawal";
+            addToBuckets(new String(name, StandardCharsets.UTF_8), hour, type, records.getDouble());
+            applied += 2 + nameLength + 17;
+        }
+        return applied;
+    }
+
+    // Reads the snapshot and the generation of the journal that follows it; false if there is no usable one
+    @SuppressWarnings("unchecked")
+    private static boolean loadSnapshot() {
+        File file = new File(DATA_FILE);
+        if (!file.exists()) {
+            // First run with rollups: they get seeded from the existing histories
+            return false;
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            long covered = ois.readLong();
+            Object obj = ois.readObject();
+            if (obj instanceof Map) {
+                rollups = (Map<String, TreeMap<Long, Bucket>>) obj;
+                generation = covered + 1;
+                return true;
+            }
+            System.err.println("Invalid rollup format. Rebuilding from history.");
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Failed to load rollups: " + e.getMessage() + ". Rebuilding from history.");
+        }
+        return false;
+    }
+
+    /**
+     * Writes the aggregates as a snapshot covering the current journal, then empties the journal and
+     * stamps it with the next generation. The snapshot is written beside its target and renamed over it.
+     */
+    private static void compact() {
+        File temp = new File(DATA_FILE + ".tmp");
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            oos.writeLong(generation);
+            oos.writeObject(rollups);
+        } catch (IOException e) {
+            System.err.println("Error saving rollups: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), new File(DATA_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error saving rollups: " + e.getMessage());
+            return;
+        }
+        generation++;
+        if (journal == null) {
+            openJournal();
+            if (journal == null) return;
+        }
+        try {
+            // Emptied before it is stamped: a crash in between leaves a journal no snapshot matches
+            journal.truncate(8);
+            ByteBuffer header = ByteBuffer.allocate(8).putLong(generation);
+            header.flip();
+            while (header.hasRemaining()) {
+                journal.write(header, header.position());
+            }
+            journalBytes = 8;
+        } catch (IOException e) {
+            System.err.println("Error resetting " + JOURNAL_FILE + ": " + e.getMessage());
+            closeJournal();
+        }
+    }
+
+    private static ByteBuffer readJournal(long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (journal.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException(JOURNAL_FILE + " is shorter than expected");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void openJournal() {
+        File dir = new File("data");
+        if (!dir.exists()) {
+            dir.mkdir();
+        }
+        try {
+            journal = FileChannel.open(new File(JOURNAL_FILE).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            System.err.println("Could not open " + JOURNAL_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private static void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            // nothing more to lose; the next compaction writes everything
+        }
+        journal = null;
+    }
+}
@@ -0,0 +1,285 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Account store that several FancyBank processes can use at once. Accounts live in fixed-size records of
+ * data/accounts.db and are read and written in place. Every access locks just that record's byte range
+ * with a FileChannel lock, so separate JVMs change different accounts concurrently and never overwrite
+ * each other's updates. Within one JVM a striped ReentrantLock orders threads first, as FileChannel locks
+ * are held per process and cannot be taken twice.
+ * <p>
+ * Records are only ever appended; the header holds the record count and is locked while an account is added.
+ *
+ * <pre>
+ * header:  magic (4) | version (4) | records (8)
+ * record:  used (1) | name length (1) | name (64) | pin length (1) | pin (32) | admin (1) | balance (8) | padding
+ * </pre>
+ */
+public class SharedAccountStore {
+    public static final String DATA_FILE = "data/accounts.db";
+    public static final int MAX_USERNAME_BYTES = 64;
+    public static final int MAX_PIN_BYTES = 32;
+
+    private static final int MAGIC = 0x46424E4B; // "FBNK"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 128;
+    private static final int NAME_AT = 2;
+    private static final int PIN_LENGTH_AT = NAME_AT + MAX_USERNAME_BYTES;
+    private static final int PIN_AT = PIN_LENGTH_AT + 1;
+    private static final int ADMIN_AT = PIN_AT + MAX_PIN_BYTES;
+    private static final int BALANCE_AT = ADMIN_AT + 1;
+    private static final int STRIPES = 64;
+
+    private final FileChannel channel;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    // Within this JVM, held while the header's file lock is; monitors would pin virtual threads across the I/O
+    private final ReentrantLock headerLock = new ReentrantLock();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    // Records this thread holds the file lock of, so nested calls do not lock the range again
+    private final ThreadLocal<Set<Integer>> heldRecords = ThreadLocal.withInitial(HashSet::new);
+    // username -> record number, for records seen so far; other processes only ever add to it
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private volatile int knownRecords = 0;
+
+    /**
+     * Opens (creating if needed) the shared store. If it is new and a users.dat exists, its accounts are copied in.
+     */
+    public SharedAccountStore(File file, Map<String, String[]> legacyUsers) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        headerLock.lock();
+        try {
+            FileLock headerFileLock = FileLocks.lock(channel, 0, HEADER_SIZE, false);
+            try {
+                if (channel.size() < HEADER_SIZE) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    header.putInt(MAGIC).putInt(VERSION).putLong(0).flip();
+                    writeFully(header, 0);
+                    int copied = 0;
+                    for (Map.Entry<String, String[]> entry : legacyUsers.entrySet()) {
+                        String[] data = entry.getValue();
+                        if (appendRecord(entry.getKey(), data[1], Boolean.parseBoolean(data[2]), Double.parseDouble(data[0]))) {
+                            copied++;
+                        }
+                    }
+                    if (copied > 0) {
+                        System.out.println("Copied " + copied + " accounts into the shared store");
+                    }
+                } else {
+                    ByteBuffer header = readFully(0, 8);
+                    if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                        throw new IOException(file + " is not a FancyBank account store");
+                    }
+                }
+            } finally {
+                headerFileLock.release();
+            }
+        } finally {
+            headerLock.unlock();
+        }
+        refresh();
+    }
+
+    public List<String> getAllUsers() {
+        refresh();
+        return new ArrayList<>(slots.keySet());
+    }
+
+    public boolean userExists(String username) {
+        return slotOf(username) >= 0;
+    }
+
+    /**
+     * Returns {balance, pin, isAdmin} as UserManager keeps them, or null if there is no such account.
+     */
+    public String[] read(String username) {
+        int slot = slotOf(username);
+        if (slot < 0) return null;
+        return withRecordLock(slot, true, () -> {
+            ByteBuffer record = readFully(offset(slot), RECORD_SIZE);
+            int pinLength = record.get(PIN_LENGTH_AT);
+            String pin = new String(record.array(), PIN_AT, pinLength, StandardCharsets.UTF_8);
+            boolean admin = record.get(ADMIN_AT) != 0;
+            double balance = record.getDouble(BALANCE_AT);
+            return new String[]{String.valueOf(balance), pin, String.valueOf(admin)};
+        });
+    }
+
+    public void writeBalance(String username, double balance) {
+        int slot = slotOf(username);
+        if (slot < 0) return;
+        withRecordLock(slot, false, () -> {
+            ByteBuffer value = ByteBuffer.allocate(8).putDouble(balance);
+            value.flip();
+            writeFully(value, offset(slot) + BALANCE_AT);
+            return null;
+        });
+    }
+
+    public void writeAdmin(String username, boolean admin) {
+        int slot = slotOf(username);
+        if (slot < 0) return;
+        withRecordLock(slot, false, () -> {
+            ByteBuffer value = ByteBuffer.allocate(1).put((byte) (admin ? 1 : 0));
+            value.flip();
+            writeFully(value, offset(slot) + ADMIN_AT);
+            return null;
+        });
+    }
+
+    /**
+     * Runs the action holding the account's record lock exclusively, so a read-modify-write of its balance
+     * cannot interleave with any other thread or process. Reads and writes inside reuse the lock.
+     */
+    public <T> T withAccountLock(String username, Supplier<T> action) {
+        int slot = slotOf(username);
+        if (slot < 0) return action.get();
+        return withRecordLock(slot, false, action);
+    }
+
+    /**
+     * Adds an account unless the name is taken, in this or any other process. Returns false if it was not added.
+     */
+    public boolean register(String username, String pin, boolean admin) {
+        if (username.getBytes(StandardCharsets.UTF_8).length > MAX_USERNAME_BYTES
+                || pin.getBytes(StandardCharsets.UTF_8).length > MAX_PIN_BYTES) {
+            return false;
+        }
+        headerLock.lock();
+        try {
+            FileLock headerFileLock = FileLocks.lock(channel, 0, HEADER_SIZE, false);
+            try {
+                refresh();
+                if (slots.containsKey(username)) return false;
+                return appendRecord(username, pin, admin, 0.0);
+            } finally {
+                headerFileLock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            headerLock.unlock();
+        }
+    }
+
+    // Caller holds the header lock
+    private boolean appendRecord(String username, String pin, boolean admin, double balance) throws IOException {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        byte[] pinBytes = pin.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_USERNAME_BYTES || pinBytes.length > MAX_PIN_BYTES) {
+            System.err.println("Account '" + username + "' does not fit the shared store record and was skipped");
+            return false;
+        }
+        long count = readFully(8, 8).getLong();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(0, (byte) 1);
+        record.put(1, (byte) name.length);
+        record.put(NAME_AT, name);
+        record.put(PIN_LENGTH_AT, (byte) pinBytes.length);
+        record.put(PIN_AT, pinBytes);
+        record.put(ADMIN_AT, (byte) (admin ? 1 : 0));
+        record.putDouble(BALANCE_AT, balance);
+        writeFully(record, offset((int) count));
+        // The count is bumped only once the record is complete, so readers never see a partial one
+        ByteBuffer header = ByteBuffer.allocate(8).putLong(count + 1);
+        header.flip();
+        writeFully(header, 8);
+        return true;
+    }
+
+    private int slotOf(String username) {
+        Integer slot = slots.get(username);
+        if (slot == null) {
+            refresh(); // possibly added by another process since we last looked
+            slot = slots.get(username);
+        }
+        return slot == null ? -1 : slot;
+    }
+
+    // Indexes records appended since the last look. Records never move, so no lock is needed to read them.
+    private void refresh() {
+        refreshLock.lock();
+        try {
+            long count = readFully(8, 8).getLong();
+            for (int slot = knownRecords; slot < count; slot++) {
+                ByteBuffer record = readFully(offset(slot), NAME_AT + MAX_USERNAME_BYTES);
+                if (record.get(0) != 1) break;
+                int length = record.get(1);
+                slots.put(new String(record.array(), NAME_AT, length, StandardCharsets.UTF_8), slot);
+                knownRecords = slot + 1;
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private <T> T withRecordLock(int slot, boolean shared, Supplier<T> action) {
+        ReentrantLock stripe = stripes[slot % STRIPES];
+        stripe.lock();
+        try {
+            Set<Integer> held = heldRecords.get();
+            if (held.contains(slot)) {
+                return action.get();
+            }
+            try {
+                FileLock recordLock = FileLocks.lock(channel, offset(slot), RECORD_SIZE, shared);
+                held.add(slot);
+                try {
+                    return action.get();
+                } finally {
+                    held.remove(slot);
+                    recordLock.release();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private static long offset(int slot) {
+        return HEADER_SIZE + (long) slot * RECORD_SIZE;
+    }
+
+    private ByteBuffer readFully(long position, int size) {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) {
+        try {
+            long at = position;
+            while (buffer.hasRemaining()) {
+                at += channel.write(buffer, at);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -3,9 +3,14 @@
     import java.awt.event.*;
 
     public class SmoothButton extends JButton {
-        private Color targetColor;
-        private Timer colorTransition;
-        private static final int TRANSITION_DURATION = 10;
+        // Time for a full start-to-hover transition; partial reversals take proportionally less
+        private static final long TRANSITION_NANOS = 150_000_000L;
+        private static final int GRADIENT_STEPS = 32;
+
+        // Precomputed once, so animating never allocates colors
+        private final Color[] gradient = new Color[GRADIENT_STEPS + 1];
+        private final HoverAnimation animation = new HoverAnimation();
+        private double progress = 0; // 0 = start color, 1 = hover color
 
         public SmoothButton(String text, Color brandBlue, Color startColor, Color hoverColor, Font font) {
             super(text);
@@ -17,33 +22,60 @@
             setBorder(BorderFactory.createLineBorder(startColor.darker(), 2));
             setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
 
+            for (int i = 0; i <= GRADIENT_STEPS; i++) {
+                double t = (double) i / GRADIENT_STEPS;
+                gradient[i] = new Color(
+                        (int) Math.round(startColor.getRed() + (hoverColor.getRed() - startColor.getRed()) * t),
+                        (int) Math.round(startColor.getGreen() + (hoverColor.getGreen() - startColor.getGreen()) * t),
+                        (int) Math.round(startColor.getBlue() + (hoverColor.getBlue() - startColor.getBlue()) * t));
+            }
+            gradient[0] = startColor;
+            gradient[GRADIENT_STEPS] = hoverColor;
+
             addMouseListener(new MouseAdapter() {
                 public void mouseEntered(MouseEvent e) {
-                    smoothTransition(hoverColor);
+                    animation.animateTo(1);
                 }
 
                 public void mouseExited(MouseEvent e) {
-                    smoothTransition(startColor);
+                    animation.animateTo(0);
                 }
             });
         }
 
-        private void smoothTransition(Color newColor) {
-            if (colorTransition != null && colorTransition.isRunning()) {
-                colorTransition.stop();
+        private void showProgress(double value) {
+            progress = value;
+            Color color = gradient[(int) Math.round(value * GRADIENT_STEPS)];
+            if (color != getBackground()) {
+                setBackground(color);
             }
-            targetColor = newColor;
-            colorTransition = new Timer(TRANSITION_DURATION, evt -> {
-                Color currentColor = getBackground();
-                int r = (int) (currentColor.getRed() + (targetColor.getRed() - currentColor.getRed()) * 0.1);
-                int g = (int) (currentColor.getGreen() + (targetColor.getGreen() - currentColor.getGreen()) * 0.1);
-                int b = (int) (currentColor.getBlue() + (targetColor.getBlue() - currentColor.getBlue()) * 0.1);
-                Color intermediate = new Color(r, g, b);
-                setBackground(intermediate);
-                if (intermediate.equals(targetColor)) {
-                    colorTransition.stop();
+        }
+
+        // Eases from wherever the button currently is to the target, on the shared scheduler
+        private class HoverAnimation implements AnimationScheduler.Animation {
+            private double from;
+            private double to;
+            private long startTime;
+            private long duration;
+
+            void animateTo(double target) {
+                from = progress;
+                to = target;
+                startTime = System.nanoTime();
+                duration = (long) (TRANSITION_NANOS * Math.abs(to - from));
+                if (duration == 0) {
+                    AnimationScheduler.cancel(this);
+                    showProgress(target);
+                    return;
                 }
-            });
-            colorTransition.start();
+                AnimationScheduler.start(this);
+            }
+
+            @Override
+            public boolean step(long now) {
+                double t = (double) (now - startTime) / duration;
+                showProgress(from + (to - from) * AnimationScheduler.easeOut(t));
+                return t >= 1;
+            }
         }
-    }
\ No newline at end of file
+    }
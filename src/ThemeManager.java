@@ -1,8 +1,6 @@
 import javax.swing.*;
-import javax.swing.border.Border;
 import javax.swing.plaf.ColorUIResource;
 import java.awt.*;
-import java.util.Enumeration;
 
 public class ThemeManager {
     // --- Color Palette ---
@@ -24,42 +22,96 @@ public class ThemeManager {
     public static final Font STANDARD_FONT = new Font("SansSerif", Font.PLAIN, 14);
     public static final Font MONO_FONT = new Font("Monospaced", Font.PLAIN, 12);
 
+    // --- Live theme colors ---
+    // Installed as UIManager defaults, so every component created afterwards reads them at paint time
+    public static final Color BACKGROUND = new ThemeColor(DARK_BG, LIGHT_BG);
+    public static final Color FOREGROUND = new ThemeColor(DARK_FG, LIGHT_FG);
+    public static final Color FIELD_BACKGROUND = new ThemeColor(DARK_ACCENT, LIGHT_BG);
+    public static final Color FIELD_FOREGROUND = new ThemeColor(Color.WHITE, Color.BLACK);
+    public static final Color HEADING = new ThemeColor(Color.WHITE, Color.BLACK);
+    public static final Color BALANCE = new ThemeColor(BRAND_GOLD, BRAND_BLUE);
+
+    private static volatile boolean darkMode = true;
+
     /**
-     * Applies the theme to a specific container and all its children recursively.
+     * Points the look-and-feel defaults at the live theme colors. Call once, after the look and feel is set
+     * and before any window is built.
      */
-    public static void applyTheme(Container container, boolean isDarkMode) {
-        Color bg = isDarkMode ? DARK_BG : LIGHT_BG;
-        Color fg = isDarkMode ? DARK_FG : LIGHT_FG;
-        Color accent = isDarkMode ? DARK_ACCENT : LIGHT_ACCENT;
-
-        // Apply to the container itself
-        if (!(container instanceof JButton)) { // Let buttons handle their own style usually
-            container.setBackground(bg);
-            container.setForeground(fg);
+    public static void install() {
+        String[] backgrounds = {"Panel", "Viewport", "ScrollPane", "CheckBox", "RadioButton", "OptionPane", "TabbedPane"};
+        for (String key : backgrounds) {
+            UIManager.put(key + ".background", BACKGROUND);
+            UIManager.put(key + ".foreground", FOREGROUND);
         }
+        UIManager.put("Label.foreground", FOREGROUND);
+        UIManager.put("OptionPane.messageForeground", FOREGROUND);
+        UIManager.put("TitledBorder.titleColor", HEADING);
 
-        for (Component comp : container.getComponents()) {
-            if (comp instanceof JPanel) {
-                applyTheme((Container) comp, isDarkMode);
-            }
-            else if (comp instanceof JTextArea || comp instanceof JTextField) {
-                comp.setBackground(accent);
-                comp.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
-                if (comp instanceof javax.swing.text.JTextComponent) {
-                    ((javax.swing.text.JTextComponent) comp).setCaretColor(isDarkMode ? Color.WHITE : Color.BLACK);
-                }
-            }
-            else if (comp instanceof JLabel) {
-                comp.setForeground(fg);
-            }
-            else if (comp instanceof JScrollPane) {
-                JScrollPane scroll = (JScrollPane) comp;
-                scroll.getViewport().setBackground(bg);
-                // Recursively style the view inside the scroll pane
-                if (scroll.getViewport().getView() instanceof Container) {
-                    applyTheme((Container) scroll.getViewport().getView(), isDarkMode);
-                }
+        String[] fields = {"TextField", "PasswordField", "TextArea", "FormattedTextField", "List", "Table", "ComboBox"};
+        for (String key : fields) {
+            UIManager.put(key + ".background", FIELD_BACKGROUND);
+            UIManager.put(key + ".foreground", FIELD_FOREGROUND);
+        }
+        UIManager.put("TextField.caretForeground", FIELD_FOREGROUND);
+        UIManager.put("PasswordField.caretForeground", FIELD_FOREGROUND);
+        UIManager.put("TextArea.caretForeground", FIELD_FOREGROUND);
+        UIManager.put("TextField.inactiveBackground", FIELD_BACKGROUND);
+    }
+
+    public static boolean isDarkMode() {
+        return darkMode;
+    }
+
+    /**
+     * Switches every live theme color at once and repaints the open windows; nothing is re-laid out.
+     */
+    public static void setDarkMode(boolean isDarkMode) {
+        if (darkMode == isDarkMode) return;
+        darkMode = isDarkMode;
+        for (Window window : Window.getWindows()) {
+            window.repaint();
+        }
+    }
+
+    /**
+     * Switches the theme and paints every showing window synchronously, returning the elapsed nanoseconds.
+     * Must be called on the Event Dispatch Thread.
+     */
+    public static long switchAndMeasure(boolean isDarkMode) {
+        long start = System.nanoTime();
+        darkMode = isDarkMode;
+        for (Window window : Window.getWindows()) {
+            if (window.isShowing() && window instanceof RootPaneContainer) {
+                JRootPane root = ((RootPaneContainer) window).getRootPane();
+                root.paintImmediately(0, 0, root.getWidth(), root.getHeight());
             }
         }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Switches to the given theme and repaints the container. Components take their colors from the
+     * live theme, so this no longer walks the component tree.
+     */
+    public static void applyTheme(Container container, boolean isDarkMode) {
+        setDarkMode(isDarkMode);
+        container.repaint();
+    }
+
+    // A color whose value follows the current theme; Swing and Java2D read it through getRGB()
+    private static class ThemeColor extends ColorUIResource {
+        private final int dark;
+        private final int light;
+
+        ThemeColor(Color dark, Color light) {
+            super(light);
+            this.dark = dark.getRGB();
+            this.light = light.getRGB();
+        }
+
+        @Override
+        public int getRGB() {
+            return darkMode ? dark : light;
+        }
     }
-}
\ No newline at end of file
+}
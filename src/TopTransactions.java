@@ -0,0 +1,87 @@
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collector;
+
+/**
+ * Finds the K largest transactions across all users by streaming their history files.
+ * Each parallel partition keeps its own bounded min-heap; partitions are merged at the end,
+ * so memory stays O(K) per partition regardless of how much history there is.
+ */
+public class TopTransactions {
+    private static final Comparator<Entry> BY_AMOUNT = Comparator.comparingDouble(e -> e.getRecord().getAmount());
+
+    public static class Entry {
+        private final String username;
+        private final TransactionRecord record;
+
+        Entry(String username, TransactionRecord record) {
+            this.username = username;
+            this.record = record;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public TransactionRecord getRecord() {
+            return record;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-12s %s", username, record);
+        }
+    }
+
+    /**
+     * Returns the k largest transactions, largest first.
+     *
+     * @param type only this type ("Deposit" or "Withdrawal"), or null for any
+     * @param from inclusive lower bound on the timestamp, or null
+     * @param to   exclusive upper bound on the timestamp, or null
+     */
+    public static List<Entry> find(int k, String type, LocalDateTime from, LocalDateTime to) {
+        if (k <= 0) return new ArrayList<>();
+
+        Heap top = UserManager.getAllUsers().parallelStream().collect(Collector.of(
+                () -> new Heap(k),
+                (heap, username) -> HistoryStore.forEachRecord(username, record -> {
+                    if (type != null && !record.getType().equals(type)) return;
+                    if (from != null && record.getTimestampDate().isBefore(from)) return;
+                    if (to != null && !record.getTimestampDate().isBefore(to)) return;
+                    heap.offer(new Entry(username, record));
+                }),
+                Heap::merge));
+
+        List<Entry> result = new ArrayList<>(top.entries);
+        result.sort(BY_AMOUNT.reversed());
+        return result;
+    }
+
+    // Min-heap holding at most k entries; its head is the smallest amount still in the running
+    private static class Heap {
+        private final int k;
+        private final PriorityQueue<Entry> entries;
+
+        Heap(int k) {
+            this.k = k;
+            this.entries = new PriorityQueue<>(k + 1, BY_AMOUNT);
+        }
+
+        void offer(Entry entry) {
+            if (entries.size() < k) {
+                entries.add(entry);
+            } else if (entry.getRecord().getAmount() > entries.peek().getRecord().getAmount()) {
+                entries.poll();
+                entries.add(entry);
+            }
+        }
+
+        Heap merge(Heap other) {
+            for (Entry entry : other.entries) {
+                offer(entry);
+            }
+            return this;
+        }
+    }
+}
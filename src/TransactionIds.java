@@ -0,0 +1,417 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Remembers which transaction IDs have been applied to each account, so a retried deposit or withdrawal
+ * is recognised instead of being applied twice. Memory stays bounded however many IDs accumulate:
+ * <ul>
+ * <li>IDs seen within the last WINDOW_MILLIS are answered from two in-memory generations of fingerprints,
+ * which is where retries after a timeout land;</li>
+ * <li>every ID ever recorded is kept in a memory-mapped open-addressing hash table on disk
+ * (data/transaction_ids.idx), so older IDs are found with a few probes rather than a history scan.</li>
+ * </ul>
+ * IDs are stored as 64-bit fingerprints of account and ID; two different IDs of one bank colliding is
+ * about as likely as 2^-64 per pair. If the index file is missing it is rebuilt from the " - ID: "
+ * suffixes in the history files.
+ * <p>
+ * An ID is recorded just after its history line is written. Each process using the index claims a byte of
+ * data/transaction_ids.owners, locks it for as long as it runs and sets it until it closes the index. A set
+ * byte nobody holds the lock on belongs to a process that died, possibly between those two steps; the next
+ * process to open the index then checks the newest history lines of every account, adds any IDs missing from
+ * the index and clears the byte.
+ * <p>
+ * In multi-process mode (UserManager.useSharedStore) every access also holds a lock on
+ * data/transaction_ids.lock, so the processes share one index and see each other's IDs. The counts in the
+ * header are re-read under that lock. A process that grows the index zeroes the old file's slot count
+ * before letting go, which tells the others still mapping the old file to map the new one.
+ */
+public class TransactionIds {
+    public static final int MAX_ID_LENGTH = 64;
+
+    private static final String INDEX_FILE = "data/transaction_ids.idx";
+    private static final String LOCK_FILE = "data/transaction_ids.lock";
+    private static final String OWNERS_FILE = "data/transaction_ids.owners";
+    private static final long WINDOW_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int MAX_WINDOW_SIZE = 100_000;
+    private static final int HEADER_BYTES = 16; // slot count, used slots
+    private static final int TAIL_LINES = 16;
+    private static final int INITIAL_SLOTS = 1 << 16;
+
+    // Recent fingerprints: current generation, and the one it replaced
+    private static Set<Long> current = new HashSet<>();
+    private static Set<Long> previous = new HashSet<>();
+    private static long generationStart = System.currentTimeMillis();
+
+    // Guards everything below. Not a monitor: index access may fault in pages, which would pin a virtual thread
+    private static final ReentrantLock lock = new ReentrantLock();
+    private static MappedByteBuffer index;
+    private static long slots;
+    private static long used;
+    // This process's byte of the owners file, locked while it runs; null until the index is first opened
+    private static FileChannel ownerChannel;
+    private static FileLock ownerLock;
+    // Multi-process mode only
+    private static FileChannel lockChannel;
+
+    /**
+     * Returns a new unique ID for a transaction whose caller did not supply one.
+     */
+    public static String generate() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * IDs are 1 to MAX_ID_LENGTH characters of letters, digits and . _ : -
+     */
+    public static boolean isValid(String id) {
+        if (id == null || id.isEmpty() || id.length() > MAX_ID_LENGTH) return false;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '_' || c == ':' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean contains(String username, String id) {
+        long fingerprint = fingerprint(username, id);
+        lock.lock();
+        try {
+            if (current.contains(fingerprint) || previous.contains(fingerprint)) {
+                return true;
+            }
+            FileLock fileLock = lockAcrossProcesses();
+            try {
+                ensureOpen();
+                return index != null && findSlot(fingerprint) < 0;
+            } finally {
+                release(fileLock);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records an applied transaction's ID. Call while holding the account's lock, after the history is written.
+     */
+    public static void add(String username, String id) {
+        long fingerprint = fingerprint(username, id);
+        lock.lock();
+        try {
+            remember(fingerprint);
+            FileLock fileLock = lockAcrossProcesses();
+            try {
+                ensureOpen();
+                if (index != null) {
+                    insert(fingerprint);
+                }
+            } finally {
+                release(fileLock);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void remember(long fingerprint) {
+        long now = System.currentTimeMillis();
+        // Each generation covers half the window, so anything younger than the window is still held
+        if (now - generationStart > WINDOW_MILLIS / 2 || current.size() >= MAX_WINDOW_SIZE) {
+            previous = current;
+            current = new HashSet<>();
+            generationStart = now;
+        }
+        current.add(fingerprint);
+    }
+
+    private static void insert(long fingerprint) {
+        if ((used + 1) * 2 > slots) {
+            grow();
+            if (index == null) return;
+        }
+        long slot = findSlot(fingerprint);
+        if (slot >= 0) {
+            index.putLong((int) (HEADER_BYTES + slot * 8), fingerprint);
+            used++;
+            index.putLong(8, used);
+        }
+    }
+
+    // Slot where the fingerprint belongs if absent, or -1 if it is already present (linear probing)
+    private static long findSlot(long fingerprint) {
+        long slot = (fingerprint & Long.MAX_VALUE) % slots;
+        while (true) {
+            long stored = index.getLong((int) (HEADER_BYTES + slot * 8));
+            if (stored == 0) return slot;
+            if (stored == fingerprint) return -1;
+            slot = slot + 1 == slots ? 0 : slot + 1;
+        }
+    }
+
+    // In multi-process mode, locks the index against the other processes; null otherwise. Caller holds lock.
+    private static FileLock lockAcrossProcesses() {
+        if (!UserManager.isSharedStore()) return null;
+        try {
+            if (lockChannel == null) {
+                new File(LOCK_FILE).getParentFile().mkdirs();
+                lockChannel = FileChannel.open(new File(LOCK_FILE).toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE);
+            }
+            return FileLocks.lock(lockChannel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void release(FileLock fileLock) {
+        if (fileLock == null) return;
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            // released when the channel closes
+        }
+    }
+
+    // Maps the index if needed and, as other processes may have changed it, re-reads its header
+    private static void ensureOpen() {
+        if (index != null && index.getLong(0) == 0) {
+            index = null; // grown by another process; map the new file
+        }
+        if (index != null) {
+            slots = index.getLong(0);
+            used = index.getLong(8);
+            return;
+        }
+        File file = new File(INDEX_FILE);
+        try {
+            List<FileLock> dead = ownerLock == null ? register() : List.of();
+            if (file.exists() && isWellFormed(file)) {
+                index = map(file, file.length());
+                slots = index.getLong(0);
+                used = index.getLong(8);
+                if (!dead.isEmpty()) {
+                    recoverFromHistoryTails();
+                }
+            } else {
+                file.delete();
+                create(file, INITIAL_SLOTS);
+                rebuildFromHistory();
+            }
+            // Their IDs are all in the index now
+            for (FileLock slot : dead) {
+                setOwnerByte(slot.position(), 0);
+                slot.release();
+            }
+        } catch (IOException e) {
+            // Duplicates are then only caught within the in-memory window
+            System.err.println("Transaction ID index unavailable: " + e.getMessage());
+            index = null;
+        }
+    }
+
+    /**
+     * Claims and sets a byte of the owners file for this process. Returns locks on the set bytes of processes
+     * that died with the index open; the caller clears and releases them once it has recovered their IDs.
+     * Bytes locked by a running process are skipped, so a healthy peer never causes a recovery.
+     */
+    private static List<FileLock> register() throws IOException {
+        File file = new File(OWNERS_FILE);
+        file.getParentFile().mkdirs();
+        ownerChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        List<FileLock> dead = new ArrayList<>();
+        long size = ownerChannel.size();
+        for (long position = 0; ownerLock == null || position < size; position++) {
+            FileLock slot = ownerChannel.tryLock(position, 1, false);
+            if (slot == null) {
+                continue; // a running process
+            }
+            if (position < size && getOwnerByte(position) != 0) {
+                dead.add(slot);
+            } else if (ownerLock == null) {
+                ownerLock = slot;
+            } else {
+                slot.release();
+            }
+        }
+        setOwnerByte(ownerLock.position(), 1);
+        Runtime.getRuntime().addShutdownHook(new Thread(TransactionIds::close, "transaction-ids-close"));
+        return dead;
+    }
+
+    private static int getOwnerByte(long position) throws IOException {
+        ByteBuffer value = ByteBuffer.allocate(1);
+        return ownerChannel.read(value, position) == 1 ? value.get(0) : 0;
+    }
+
+    private static void setOwnerByte(long position, int value) throws IOException {
+        ownerChannel.write(ByteBuffer.wrap(new byte[]{(byte) value}), position);
+        ownerChannel.force(false);
+    }
+
+    // Flushes the index and clears this process's owner byte; runs at shutdown
+    private static void close() {
+        lock.lock();
+        try {
+            if (index != null) {
+                index.force();
+            }
+            setOwnerByte(ownerLock.position(), 0);
+            ownerLock.release();
+        } catch (IOException e) {
+            System.err.println("Could not close the transaction ID index: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // A torn or foreign file is discarded and rebuilt rather than trusted
+    private static boolean isWellFormed(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            long slotCount = in.readLong();
+            long usedSlots = in.readLong();
+            return slotCount > 0 && usedSlots >= 0 && usedSlots <= slotCount
+                    && file.length() == HEADER_BYTES + slotCount * 8;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private static void create(File file, long slotCount) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        index = map(file, HEADER_BYTES + slotCount * 8);
+        slots = slotCount;
+        used = 0;
+        index.putLong(0, slots);
+        index.putLong(8, used);
+    }
+
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Transaction ID index is too large to map");
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    // Rehashes into a table twice the size, written beside the old one and renamed over it
+    private static void grow() {
+        MappedByteBuffer old = index;
+        long oldSlots = slots;
+        File file = new File(INDEX_FILE);
+        File temp = new File(INDEX_FILE + ".tmp");
+        try {
+            temp.delete();
+            create(temp, oldSlots * 2);
+            for (long slot = 0; slot < oldSlots; slot++) {
+                long stored = old.getLong((int) (HEADER_BYTES + slot * 8));
+                if (stored != 0) {
+                    index.putLong((int) (HEADER_BYTES + findSlot(stored) * 8), stored);
+                    used++;
+                }
+            }
+            index.putLong(8, used);
+            index.force();
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Processes still mapping the old file take this as the sign to map the new one
+            old.putLong(0, 0);
+        } catch (IOException e) {
+            System.err.println("Could not grow transaction ID index: " + e.getMessage());
+            index = null;
+        }
+    }
+
+    private static void rebuildFromHistory() {
+        int found = 0;
+        for (String username : UserManager.getAllUsers()) {
+            File history = HistoryStore.fileFor(username);
+            if (!history.exists()) continue;
+            try (BufferedReader reader = new BufferedReader(new FileReader(history), 1 << 16)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String id = TransactionRecord.idOf(line);
+                    if (id != null) {
+                        insert(fingerprint(username, id));
+                        found++;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading transaction history for " + username + ": " + e.getMessage());
+            }
+        }
+        if (found > 0) {
+            System.out.println("Rebuilt transaction ID index with " + found + " IDs");
+        }
+    }
+
+    // IDs are recorded in history order, so walking an account's history back from the end until an ID that is
+    // already indexed (or a line without one) finds everything a crash left out
+    private static void recoverFromHistoryTails() {
+        int recovered = 0;
+        for (String username : UserManager.getAllUsers()) {
+            int limit = TAIL_LINES;
+            while (true) {
+                List<String> lines = HistoryStore.readLastLines(username, limit);
+                List<Long> missing = new ArrayList<>();
+                boolean reachedIndexed = false;
+                for (String line : lines) {
+                    String id = TransactionRecord.idOf(line);
+                    if (id == null || findSlot(fingerprint(username, id)) < 0) {
+                        reachedIndexed = true;
+                        break;
+                    }
+                    missing.add(fingerprint(username, id));
+                }
+                if (reachedIndexed || lines.size() < limit) {
+                    for (long fingerprint : missing) {
+                        insert(fingerprint);
+                    }
+                    recovered += missing.size();
+                    break;
+                }
+                limit *= 4;
+            }
+        }
+        if (recovered > 0) {
+            System.out.println("Recovered " + recovered + " transaction IDs missing from the index");
+        }
+    }
+
+    // 64-bit FNV-1a over account and ID, finished with the MurmurHash3 mixer; never 0 (the empty slot)
+    private static long fingerprint(String username, String id) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < username.length(); i++) {
+            h = (h ^ username.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ '\n') * 0x100000001b3L;
+        for (int i = 0; i < id.length(); i++) {
+            h = (h ^ id.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
@@ -1,13 +1,22 @@
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.concurrent.atomic.LongAdder;
 
 public class TransactionRecord {
+    // Suffix carrying the transaction ID; lines written before IDs existed have none
+    public static final String ID_MARKER = " - ID: ";
+    // Precedes the balance after the transaction
+    public static final String BALANCE_MARKER = " - Balance: $";
+
     private String type; // Deposit or Withdrawal
     private double amount;
     private LocalDateTime timestamp;
+    private String id;
 
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final LatencyHistogram parseTimer = Metrics.timer(Metrics.PARSE_RECORD);
+    private static final LongAdder parseFailures = Metrics.counter("TransactionRecord.parseFailures");
 
     public TransactionRecord(String type, double amount, LocalDateTime timestamp) {
         this.type = type;
@@ -37,12 +46,55 @@ public class TransactionRecord {
         return timestamp;
     }
 
+    /**
+     * Returns the transaction ID from the history line, or null for lines written before IDs existed.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Formats one history line: "[2023-01-01 12:00:00] Deposit: $100.00 - Balance: $1,000.00 - ID: 5f0c..."
+     */
+    public static String toHistoryLine(LocalDateTime timestamp, String type, double amount, double balance, String id) {
+        return String.format("[%s] %s: $%,.2f - Balance: $%,.2f%s%s",
+                timestamp.format(formatter), type, amount, balance, ID_MARKER, id);
+    }
+
+    /**
+     * Returns the ID suffix of a history line, or null if it has none.
+     */
+    public static String idOf(String line) {
+        int at = line.lastIndexOf(ID_MARKER);
+        if (at < 0) return null;
+        String id = line.substring(at + ID_MARKER.length()).trim();
+        return id.isEmpty() ? null : id;
+    }
+
+    /**
+     * Returns where the balance column of a history line ends: at the ID suffix, or the end of the line.
+     */
+    public static int balanceEnd(String line) {
+        int at = line.lastIndexOf(ID_MARKER);
+        return at < 0 ? line.length() : at;
+    }
+
     @Override
     public String toString() {
         return String.format("[%s] %s: $%,.2f", getTimestamp(), type, amount);
     }
 
     public static TransactionRecord fromString(String line) {
+        long start = System.nanoTime();
+        TransactionRecord record = parse(line);
+        parseTimer.record(System.nanoTime() - start);
+        if (record == null) {
+            parseFailures.increment();
+        }
+        return record;
+    }
+
+    private static TransactionRecord parse(String line) {
         if (line == null || line.trim().isEmpty()) {
             return null;
         }
@@ -87,9 +139,11 @@ public class TransactionRecord {
             String type = rest.substring(0, colonIndex).trim();
             String amountPart = rest.substring(colonIndex + 1).trim();
 
-            // Handle potential " - Balance: $xxx.xx" suffix
+            // Handle potential " - Balance: $xxx.xx" and " - ID: ..." suffixes
             if (amountPart.contains(" - Balance:")) {
                 amountPart = amountPart.substring(0, amountPart.indexOf(" - Balance:")).trim();
+            } else if (amountPart.contains(ID_MARKER)) {
+                amountPart = amountPart.substring(0, amountPart.indexOf(ID_MARKER)).trim();
             }
 
             // Remove $ sign and commas from amount
@@ -106,7 +160,9 @@ public class TransactionRecord {
                 return null;
             }
 
-            return new TransactionRecord(type, amount, timestamp);
+            TransactionRecord record = new TransactionRecord(type, amount, timestamp);
+            record.id = idOf(line);
+            return record;
 
         } catch (Exception e) {
             System.err.println("Unexpected error parsing transaction record: \"" + line + "\" - " + e.getMessage());
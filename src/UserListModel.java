@@ -0,0 +1,139 @@
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * List model over a sorted array of usernames with case-insensitive search.
+ * Prefix matches come from a binary search over the sorted names and are listed first,
+ * followed by the other names containing the query. Typing more characters only re-checks
+ * the previous matches, and replacing the whole list fires a single change event.
+ */
+public class UserListModel extends AbstractListModel<String> {
+    private String[] names = new String[0];  // sorted by folded name
+    private String[] folded = new String[0]; // case-folded copy of names, same order
+    private int[] matches;                   // indices into names, null when unfiltered
+    private int matchCount;
+    private String query = "";
+
+    /**
+     * Replaces every username, keeping the current filter.
+     */
+    public void setUsers(Collection<String> users) {
+        int oldSize = getSize();
+        String[] unsorted = users.toArray(new String[0]);
+        int n = unsorted.length;
+        // Fold each name once, then sort positions by the folded keys
+        String[] keys = new String[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = fold(unsorted[i]);
+        }
+        int[] order = IndexSort.sortedPositions(n, (a, b) -> keys[a].compareTo(keys[b]));
+        names = new String[n];
+        folded = new String[n];
+        for (int i = 0; i < n; i++) {
+            names[i] = unsorted[order[i]];
+            folded[i] = keys[order[i]];
+        }
+        applyFilter(query, false);
+        fireChanged(oldSize);
+    }
+
+    /**
+     * Shows only usernames containing the query (case-insensitive); an empty query shows everyone.
+     */
+    public void filter(String text) {
+        String newQuery = text == null ? "" : fold(text.trim());
+        if (newQuery.equals(query)) return;
+        int oldSize = getSize();
+        // A longer query can only match a subset of what the shorter one matched
+        boolean refine = !query.isEmpty() && newQuery.contains(query);
+        applyFilter(newQuery, refine);
+        fireChanged(oldSize);
+    }
+
+    @Override
+    public int getSize() {
+        return matches == null ? names.length : matchCount;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return names[matches == null ? index : matches[index]];
+    }
+
+    private void applyFilter(String newQuery, boolean refine) {
+        query = newQuery;
+        if (newQuery.isEmpty()) {
+            matches = null;
+            matchCount = 0;
+            return;
+        }
+
+        int[] result = new int[refine ? matchCount : 16];
+        int count = 0;
+        if (refine) {
+            // Previous matches in order: prefix hits first, then the rest
+            int[] rest = new int[matchCount];
+            int restCount = 0;
+            for (int i = 0; i < matchCount; i++) {
+                int index = matches[i];
+                if (folded[index].startsWith(newQuery)) {
+                    result[count++] = index;
+                } else if (folded[index].contains(newQuery)) {
+                    rest[restCount++] = index;
+                }
+            }
+            System.arraycopy(rest, 0, result, count, restCount);
+            count += restCount;
+        } else {
+            int from = lowerBound(newQuery);
+            int to = lowerBound(newQuery + Character.MAX_VALUE);
+            result = new int[Math.max(16, to - from)];
+            for (int i = from; i < to; i++) {
+                result[count++] = i;
+            }
+            for (int i = 0; i < folded.length; i++) {
+                if ((i < from || i >= to) && folded[i].contains(newQuery)) {
+                    if (count == result.length) {
+                        result = Arrays.copyOf(result, count * 2);
+                    }
+                    result[count++] = i;
+                }
+            }
+        }
+        matches = result;
+        matchCount = count;
+    }
+
+    // First position whose folded name is >= key
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = folded.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (folded[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Folds case the same way String.CASE_INSENSITIVE_ORDER does, so folded names are in natural order
+    private static String fold(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    // One event for the whole list, however much it changed
+    private void fireChanged(int oldSize) {
+        int size = Math.max(getSize(), oldSize);
+        if (size > 0) {
+            fireContentsChanged(this, 0, size - 1);
+        }
+    }
+}
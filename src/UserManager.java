@@ -1,99 +1,418 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * The account store. Accounts are split by username hash into shards (see AccountShard), each with
+ * its own file and lock; users.shards records how many there are. A users.dat from before sharding
+ * is split up on first start and kept as users.dat.migrated.
+ */
 public class UserManager {
-    private static final String DATA_FILE = "users.dat";
-    private static Map<String, String[]> users = new HashMap<>();
+    private static final String LEGACY_FILE = "users.dat";
+    private static final String SHARD_MANIFEST = "users.shards";
+    public static final int DEFAULT_SHARDS = 16;
+    private static final LatencyHistogram updateTimer = Metrics.timer(Metrics.UPDATE_BALANCE);
+    // Replaced as a whole by reshard(); each shard is guarded by its own lock
+    private static volatile AccountShard[] shards;
+    // Serializes changes of the store layout: reshards, wholesale replacement, the switch to the shared store
+    private static final ReentrantLock layoutLock = new ReentrantLock();
+    // Set in multi-process mode; every account then lives in the shared store instead of the shards
+    private static volatile SharedAccountStore shared;
 
     static {
-        loadFromFile();
+        shards = loadShards();
     }
+
+    /**
+     * Switches to the multi-process account store (data/accounts.db), copying the accounts into it the first time.
+     * The transaction ID index and the rollups then also coordinate with the other processes through file locks.
+     * Call before any account is read or written. Returns false if the store could not be opened.
+     */
+    public static boolean useSharedStore() {
+        layoutLock.lock();
+        try {
+            shared = new SharedAccountStore(new File(SharedAccountStore.DATA_FILE), getUsers());
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Could not open the shared account store: " + e.getMessage());
+            return false;
+        } finally {
+            layoutLock.unlock();
+        }
+    }
+
+    public static boolean isSharedStore() {
+        return shared != null;
+    }
+
+    public static int getShardCount() {
+        return shards.length;
+    }
+
     public static List<String> getAllUsers() {
-        return new ArrayList<>(users.keySet());
+        if (shared != null) {
+            return shared.getAllUsers();
+        }
+        List<String> names = new ArrayList<>();
+        for (AccountShard shard : shards) {
+            shard.lock.lock();
+            try {
+                names.addAll(shard.users.keySet());
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return names;
+    }
+
+    private static AccountShard[] loadShards() {
+        int count = readShardCount();
+        if (count > 0) {
+            return AccountShard.loadAll(count);
+        }
+        Map<String, String[]> legacy = loadLegacyFile();
+        AccountShard[] fresh = AccountShard.partition(legacy, DEFAULT_SHARDS);
+        // users.dat stays in place unless the shards are known to be in use
+        if (writeShardCount(DEFAULT_SHARDS) && !legacy.isEmpty()) {
+            File legacyFile = new File(LEGACY_FILE);
+            if (legacyFile.renameTo(new File(LEGACY_FILE + ".migrated"))) {
+                System.out.println("Split " + legacy.size() + " accounts from users.dat into " + DEFAULT_SHARDS + " shards");
+            }
+        }
+        return fresh;
+    }
+
+    // Shard count from the manifest, or -1 if the store has not been sharded yet
+    private static int readShardCount() {
+        File manifest = new File(SHARD_MANIFEST);
+        if (!manifest.exists()) {
+            return -1;
+        }
+        try {
+            int count = Integer.parseInt(new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8).trim());
+            if (count > 0) {
+                return count;
+            }
+        } catch (IOException | NumberFormatException e) {
+            // fall through
+        }
+        System.err.println("Invalid " + SHARD_MANIFEST + "; assuming " + DEFAULT_SHARDS + " shards");
+        return DEFAULT_SHARDS;
+    }
+
+    // Written beside the manifest and renamed over it, so readers see the old count or the new one. The temporary
+    // file's name is unique, as processes sharing the directory may all write the manifest on their first start.
+    private static boolean writeShardCount(int count) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(new File(".").toPath(), SHARD_MANIFEST, ".tmp");
+            Files.write(temp, (count + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, new File(SHARD_MANIFEST).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving " + SHARD_MANIFEST + ": " + e.getMessage());
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+            return false;
+        }
     }
 
     @SuppressWarnings("unchecked")
-    private static void loadFromFile() {
-        File file = new File(DATA_FILE);
+    private static Map<String, String[]> loadLegacyFile() {
+        File file = new File(LEGACY_FILE);
         if (!file.exists()) {
-            users = new HashMap<>();
-            return;
+            return new HashMap<>();
         }
         try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
             Object obj = ois.readObject();
             if (obj instanceof Map) {
-                users = (Map<String, String[]>) obj;
-            } else {
-                users = new HashMap<>();
-                System.err.println("Invalid data format. Starting fresh.");
+                return (Map<String, String[]>) obj;
             }
+            System.err.println("Invalid data format. Starting fresh.");
         } catch (IOException | ClassNotFoundException e) {
-            users = new HashMap<>();
             System.err.println("Failed to load user data: " + e.getMessage());
         }
+        return new HashMap<>();
     }
 
-    private static void saveUsers() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            oos.writeObject(users);
-        } catch (IOException e) {
-            System.err.println("Error saving user data: " + e.getMessage());
+    // Runs the action on the account's shard while holding its lock, retrying if a reshard replaced it meanwhile
+    private static <T> T withShard(String username, Function<AccountShard, T> action) {
+        while (true) {
+            AccountShard[] current = shards;
+            AccountShard shard = current[AccountShard.indexFor(username, current.length)];
+            shard.lock.lock();
+            try {
+                if (!shard.retired) {
+                    return action.apply(shard);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    // Locks shards from..end in order, then runs the action; used to change every shard at once
+    private static void withAllShards(AccountShard[] locked, int from, Runnable action) {
+        if (from == locked.length) {
+            action.run();
+            return;
         }
+        locked[from].lock.lock();
+        try {
+            withAllShards(locked, from + 1, action);
+        } finally {
+            locked[from].lock.unlock();
+        }
+    }
+
+    public static boolean userExists(String username) {
+        if (shared != null) {
+            return shared.userExists(username);
+        }
+        return withShard(username, shard -> shard.users.containsKey(username));
+    }
+
+    /**
+     * Adds an account with a zero balance. Returns false if the name is already taken
+     * (by another process too, in multi-process mode) or does not fit the shared store.
+     */
+    public static boolean registerUser(String username, String pin, boolean isAdmin) {
+        if (shared != null) {
+            return shared.register(username, pin, isAdmin);
+        }
+        return withShard(username, shard -> {
+            if (shard.users.containsKey(username)) return false;
+            shard.users.put(username, new String[]{"0.0", pin, String.valueOf(isAdmin)});
+            shard.save(username);
+            return true;
+        });
+    }
+
+    public static boolean validateUser(String username, String pin) {
+        String[] data = read(username);
+        return data != null && data[1].equals(pin);
     }
 
-    public static synchronized boolean userExists(String username) {
-        return users.containsKey(username);
+    public static boolean isAdmin(String username) {
+        String[] data = read(username);
+        return data != null && Boolean.parseBoolean(data[2]);
     }
 
-    public static void registerUser(String username, String pin, boolean isAdmin) {
-        users.put(username, new String[]{"0.0", pin, String.valueOf(isAdmin)});
-        saveUsers();
+    public static double getBalance(String username) {
+        String[] data = read(username);
+        return data == null ? 0.0 : Double.parseDouble(data[0]);
     }
 
-    public static synchronized boolean validateUser(String username, String pin) {
-        if (users.containsKey(username)) {
-            String[] data = users.get(username);
-            return data[1].equals(pin);
+    // {balance, pin, isAdmin}, or null if there is no such account
+    private static String[] read(String username) {
+        if (shared != null) {
+            return shared.read(username);
         }
-        return false;
+        return withShard(username, shard -> {
+            String[] data = shard.users.get(username);
+            return data == null ? null : data.clone();
+        });
     }
 
-    public static synchronized boolean isAdmin(String username) {
-        if (users.containsKey(username)) {
-            String[] data = users.get(username);
-            return Boolean.parseBoolean(data[2]);
+    public static void updateBalance(String username, double newBalance) {
+        long start = System.nanoTime();
+        if (shared != null) {
+            shared.writeBalance(username, newBalance);
+        } else {
+            withShard(username, shard -> {
+                String[] data = shard.users.get(username);
+                if (data != null) {
+                    data[0] = String.valueOf(newBalance);
+                    shard.save(username);
+                }
+                return null;
+            });
         }
-        return false;
+        updateTimer.record(System.nanoTime() - start);
     }
 
-    public static synchronized double getBalance(String username) {
-        if (users.containsKey(username)) {
-            String[] data = users.get(username);
-            return Double.parseDouble(data[0]);
+    /**
+     * Updates several balances, saving each shard that holds one of them once.
+     */
+    public static void updateBalances(Map<String, Double> newBalances) {
+        if (shared != null) {
+            for (Map.Entry<String, Double> entry : newBalances.entrySet()) {
+                shared.writeBalance(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        while (true) {
+            AccountShard[] current = shards;
+            List<List<Map.Entry<String, Double>>> byShard = new ArrayList<>();
+            for (int i = 0; i < current.length; i++) {
+                byShard.add(new ArrayList<>());
+            }
+            for (Map.Entry<String, Double> entry : newBalances.entrySet()) {
+                byShard.get(AccountShard.indexFor(entry.getKey(), current.length)).add(entry);
+            }
+            for (int i = 0; i < current.length; i++) {
+                List<Map.Entry<String, Double>> entries = byShard.get(i);
+                if (entries.isEmpty()) continue;
+                AccountShard shard = current[i];
+                shard.lock.lock();
+                try {
+                    if (shard.retired) break; // resharded under us; the rest goes to the new layout
+                    for (Map.Entry<String, Double> entry : entries) {
+                        String[] data = shard.users.get(entry.getKey());
+                        if (data != null) {
+                            data[0] = String.valueOf(entry.getValue());
+                        }
+                    }
+                    shard.save(null);
+                    entries.clear();
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+            Map<String, Double> remaining = new HashMap<>();
+            for (List<Map.Entry<String, Double>> entries : byShard) {
+                for (Map.Entry<String, Double> entry : entries) {
+                    remaining.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if (remaining.isEmpty()) {
+                return;
+            }
+            newBalances = remaining;
         }
-        return 0.0;
     }
 
-    public static synchronized void updateBalance(String username, double newBalance) {
-        if (users.containsKey(username)) {
-            String[] data = users.get(username);
-            data[0] = String.valueOf(newBalance);
-            saveUsers();
+    /**
+     * Runs a read-modify-write of one account so that no other process can change the account in between.
+     * In single-process mode callers' own locking already covers this and the action simply runs.
+     */
+    public static <T> T withAccountLock(String username, Supplier<T> action) {
+        if (shared != null) {
+            return shared.withAccountLock(username, action);
         }
+        return action.get();
     }
 
-    public static synchronized void promoteToAdmin(String username) {
-        if (users.containsKey(username)) {
-            String[] data = users.get(username);
-            data[2] = "true";
-            saveUsers();
+    public static void promoteToAdmin(String username) {
+        if (shared != null) {
+            shared.writeAdmin(username, true);
+            return;
+        }
+        withShard(username, shard -> {
+            String[] data = shard.users.get(username);
+            if (data != null) {
+                data[2] = "true";
+                shard.save(username);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * A copy of every account as {balance, pin, isAdmin}. Changes to it are not stored; see replaceAllUsers.
+     */
+    public static Map<String, String[]> getUsers() {
+        Map<String, String[]> snapshot = new HashMap<>();
+        if (shared != null) {
+            for (String username : shared.getAllUsers()) {
+                String[] data = shared.read(username);
+                if (data != null) {
+                    snapshot.put(username, data);
+                }
+            }
+            return snapshot;
+        }
+        for (AccountShard shard : shards) {
+            shard.lock.lock();
+            try {
+                for (Map.Entry<String, String[]> entry : shard.users.entrySet()) {
+                    snapshot.put(entry.getKey(), entry.getValue().clone());
+                }
+            } finally {
+                shard.lock.unlock();
+            }
         }
+        return snapshot;
     }
 
-    public static synchronized Map<String, String[]> getUsers() {
-        return users;
+    /**
+     * Replaces every account with the given ones and saves all shards. For generated and benchmark data.
+     */
+    public static void replaceAllUsers(Map<String, String[]> users) {
+        if (shared != null) {
+            throw new IllegalStateException("The shared account store cannot be replaced wholesale");
+        }
+        layoutLock.lock();
+        try {
+            AccountShard[] current = shards;
+            withAllShards(current, 0, () -> {
+                for (AccountShard shard : current) {
+                    shard.users.clear();
+                }
+                for (Map.Entry<String, String[]> entry : users.entrySet()) {
+                    current[AccountShard.indexFor(entry.getKey(), current.length)].users
+                            .put(entry.getKey(), entry.getValue().clone());
+                }
+                java.util.Arrays.stream(current).parallel().forEach(shard -> shard.save(null));
+            });
+        } finally {
+            layoutLock.unlock();
+        }
+    }
+
+    /**
+     * Moves every account into newCount shards. The new shard files are written first and the manifest is then
+     * switched with an atomic rename, so an interrupted reshard leaves the old layout intact. Every shard is
+     * locked meanwhile; other callers wait and then continue on the new layout. Returns false if the new layout
+     * could not be committed, in which case the old one is still in use.
+     */
+    public static boolean reshard(int newCount) {
+        if (newCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1");
+        }
+        if (shared != null) {
+            throw new IllegalStateException("The shared account store is not sharded");
+        }
+        layoutLock.lock();
+        try {
+            AccountShard[] old = shards;
+            if (old.length == newCount) {
+                return true;
+            }
+            boolean[] switched = new boolean[1];
+            withAllShards(old, 0, () -> {
+                Map<String, String[]> all = new HashMap<>();
+                for (AccountShard shard : old) {
+                    all.putAll(shard.users);
+                }
+                AccountShard[] fresh = AccountShard.partition(all, newCount);
+                if (!writeShardCount(newCount)) {
+                    for (AccountShard shard : fresh) {
+                        shard.file.delete();
+                    }
+                    return;
+                }
+                shards = fresh;
+                switched[0] = true;
+                for (AccountShard shard : old) {
+                    shard.retired = true;
+                    shard.file.delete();
+                }
+            });
+            return switched[0];
+        } finally {
+            layoutLock.unlock();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,316 @@
+import java.io.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+/**
+ * Generates a synthetic bank and replays a concurrent workload against the application core, to reproduce
+ * production-scale behaviour locally. Generation writes N users to the account store and M transactions per user
+ * to their history files; the replay then runs logins, deposits, withdrawals and admin refreshes from
+ * several threads and reports throughput and latency percentiles per operation.
+ *
+ * <pre>
+ * --simulate [--users 1000] [--transactions 500] [--threads 8] [--seconds 30] [--warmup 5]
+ *            [--mix login=40,deposit=30,withdraw=29,refresh=1] [--seed 42] [--reuse-data]
+ * </pre>
+ * Everything is written to the working directory, so the simulator refuses to run in one that holds
+ * accounts it did not create itself.
+ */
+public class WorkloadSimulator {
+    private static final String MARKER_FILE = ".fancybank-simulation";
+    private static final String[] OPERATIONS = {"login", "deposit", "withdraw", "refresh"};
+    private static final int LOGIN_HISTORY = 50;
+
+    /**
+     * Parses the options, generates the data unless --reuse-data is given, runs the workload and prints the report.
+     */
+    public static void run(List<String> options) {
+        File marker = new File(MARKER_FILE);
+        if (!UserManager.getAllUsers().isEmpty() && !marker.exists()) {
+            System.err.println("Refusing to simulate in " + new File("").getAbsolutePath()
+                    + ": it holds accounts the simulator did not create. Run it from an empty directory.");
+            System.exit(1);
+        }
+        int users = intOption(options, "--users", 1000);
+        int transactions = intOption(options, "--transactions", 500);
+        int threads = intOption(options, "--threads", Runtime.getRuntime().availableProcessors() * 2);
+        int seconds = intOption(options, "--seconds", 30);
+        int warmup = intOption(options, "--warmup", 5);
+        long seed = intOption(options, "--seed", 42);
+        int[] mix = parseMix(stringOption(options, "--mix", "login=40,deposit=30,withdraw=29,refresh=1"));
+        if (users < 1 || transactions < 0 || threads < 1 || seconds < 1 || warmup < 0 || mix == null) {
+            System.err.println("Invalid simulation options: " + String.join(" ", options));
+            System.exit(1);
+        }
+
+        if (!options.contains("--reuse-data")) {
+            if (UserManager.isSharedStore()) {
+                System.err.println("Data is generated into the sharded store; run without --shared-store, or with --reuse-data");
+                System.exit(1);
+            }
+            try {
+                marker.createNewFile();
+                generate(users, transactions, seed);
+            } catch (IOException e) {
+                System.err.println("Could not generate simulation data: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        System.out.print(replay(threads, warmup, seconds, mix));
+        System.out.println();
+        System.out.print(Metrics.snapshot());
+    }
+
+    /**
+     * Replaces the simulation data with users user00000.. and their histories. Each user gets the given
+     * number of transactions over the past year, mostly in daytime hours, with log-normal amounts and a
+     * monthly salary-sized deposit now and then; withdrawals never overdraw. Stored balances match
+     * the histories, and the rollups are rebuilt from them.
+     */
+    static void generate(int userCount, int transactionsPerUser, long seed) throws IOException {
+        long start = System.nanoTime();
+        // Remove the previous run's data before any store loads it
+        new File("data/rollups.dat").delete();
+        new File("data/rollups.log").delete();
+        new File("data/alert_state.dat").delete();
+        new File("data/transaction_ids.idx").delete();
+        File[] oldHistories = new File(".").listFiles((dir, name) -> name.endsWith("_history.txt"));
+        if (oldHistories != null) {
+            for (File file : oldHistories) {
+                file.delete();
+            }
+        }
+
+        String[] names = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            names[i] = String.format("user%05d", i);
+        }
+        long now = LocalDateTime.now().withNano(0).atZone(ZoneId.systemDefault()).toEpochSecond();
+        Map<String, Double> balances = new ConcurrentHashMap<>();
+        List<IOException> failures = Collections.synchronizedList(new ArrayList<>());
+        IntStream.range(0, userCount).parallel().forEach(i -> {
+            try {
+                balances.put(names[i], writeHistory(names[i], transactionsPerUser, new SplittableRandom(seed * 31 + i), now));
+            } catch (IOException e) {
+                failures.add(e);
+            }
+        });
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+
+        Map<String, String[]> users = new HashMap<>();
+        SplittableRandom pins = new SplittableRandom(seed);
+        for (String name : names) {
+            users.put(name, new String[]{String.valueOf(balances.get(name)), String.format("%04d", pins.nextInt(10000)), "false"});
+        }
+        UserManager.replaceAllUsers(users);
+        RollupStore.rebuildFromHistory();
+        System.out.printf("Generated %,d users with %,d transactions each in %,d ms%n",
+                userCount, transactionsPerUser, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Writes one user's history, oldest first, and returns the final balance
+    private static double writeHistory(String username, int count, SplittableRandom random, long now) throws IOException {
+        long yearAgo = now - 365L * 24 * 3600;
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            long day = yearAgo + random.nextLong(365) * 24 * 3600;
+            // 80% of activity between 08:00 and 20:00
+            int secondOfDay = random.nextInt(10) < 8 ? 8 * 3600 + random.nextInt(12 * 3600) : random.nextInt(24 * 3600);
+            times[i] = Math.min(now - 1, day + secondOfDay);
+        }
+        Arrays.sort(times);
+
+        ZoneId zone = ZoneId.systemDefault();
+        long balance = 0;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(HistoryStore.fileFor(username)), 1 << 16)) {
+            for (int i = 0; i < count; i++) {
+                long time = times[i];
+                long cents;
+                boolean deposit;
+                if (balance == 0 || random.nextInt(20) == 0) {
+                    // Salary-like deposit
+                    deposit = true;
+                    cents = Math.round((2500 + random.nextDouble() * 2500) * 100);
+                } else {
+                    cents = logNormalCents(random);
+                    deposit = random.nextBoolean() || cents > balance;
+                }
+                balance += deposit ? cents : -cents;
+                LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochSecond(time), zone);
+                writer.write(TransactionRecord.toHistoryLine(timestamp, deposit ? "Deposit" : "Withdrawal",
+                        cents / 100.0, balance / 100.0, "sim-" + username + "-" + i));
+                writer.write('\n');
+            }
+        }
+        return balance / 100.0;
+    }
+
+    // Everyday amounts: median about $60, with a long tail into the thousands
+    private static long logNormalCents(RandomGenerator random) {
+        return Math.max(1, Math.round(Math.exp(Math.log(60) + 1.1 * random.nextGaussian()) * 100));
+    }
+
+    /**
+     * Runs the workload on the given number of threads: warmup seconds unmeasured, then seconds measured.
+     * Accounts are picked with a skew towards a hot minority, as real traffic is.
+     */
+    static String replay(int threads, int warmupSeconds, int seconds, int[] mix) {
+        List<String> names = UserManager.getAllUsers();
+        Collections.sort(names);
+        String[] users = names.toArray(new String[0]);
+        String[] pins = new String[users.length];
+        Map<String, String[]> store = UserManager.getUsers();
+        for (int i = 0; i < users.length; i++) {
+            pins[i] = store.get(users[i])[1];
+        }
+        if (users.length == 0) {
+            return "No accounts to simulate against; run without --reuse-data first" + System.lineSeparator();
+        }
+
+        int totalWeight = 0;
+        for (int weight : mix) {
+            totalWeight += weight;
+        }
+        LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+        LongAdder[] rejected = new LongAdder[OPERATIONS.length];
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            rejected[i] = new LongAdder();
+        }
+
+        long measureFrom = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        // The core timers cover the same window as the per-operation latencies
+        Thread resetAfterWarmup = new Thread(() -> {
+            try {
+                Thread.sleep(warmupSeconds * 1000L);
+                Metrics.reset();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "simulator-warmup");
+        resetAfterWarmup.setDaemon(true);
+        resetAfterWarmup.start();
+        long stopAt = measureFrom + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(threads);
+        int weightSum = totalWeight;
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                boolean measuring = false;
+                try {
+                    while (true) {
+                        long start = System.nanoTime();
+                        if (start >= stopAt) break;
+                        if (!measuring && start >= measureFrom) {
+                            measuring = true;
+                        }
+                        int op = pick(mix, random.nextInt(weightSum));
+                        int account = (int) (users.length * Math.pow(random.nextDouble(), 3));
+                        boolean ok = execute(op, users[account], pins[account], random);
+                        if (measuring) {
+                            latencies[op].record(System.nanoTime() - start);
+                            if (!ok) rejected[op].increment();
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Simulation worker failed: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            }, "simulator-" + t);
+            worker.start();
+        }
+        System.out.printf("Running %d threads for %d s after a %d s warmup...%n", threads, seconds, warmupSeconds);
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "Workload: %,d accounts, %d threads, %d s measured%n", users.length, threads, seconds));
+        sb.append(String.format(Locale.ROOT, "  %-9s %10s %10s %9s %10s %10s %10s %10s%n",
+                "operation", "count", "ops/s", "rejected", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        long total = 0;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            LatencyHistogram h = latencies[i];
+            if (h.getCount() == 0) continue;
+            total += h.getCount();
+            sb.append(String.format(Locale.ROOT, "  %-9s %10d %10.1f %9d %10.3f %10.3f %10.3f %10.3f%n",
+                    OPERATIONS[i], h.getCount(), h.getCount() / (double) seconds, rejected[i].sum(),
+                    h.quantileNanos(0.5) / 1e6, h.quantileNanos(0.99) / 1e6, h.quantileNanos(0.999) / 1e6, h.getMaxNanos() / 1e6));
+        }
+        sb.append(String.format(Locale.ROOT, "  %-9s %10d %10.1f%n", "total", total, total / (double) seconds));
+        return sb.toString();
+    }
+
+    // Returns false when the operation was refused (wrong PIN, insufficient funds)
+    private static boolean execute(int op, String username, String pin, ThreadLocalRandom random) {
+        switch (op) {
+            case 0: // login: PIN check, balance and the most recent transactions, as the account window shows them
+                if (!UserManager.validateUser(username, pin)) return false;
+                AccountService.getBalance(username);
+                AccountService.getHistory(username, LOGIN_HISTORY);
+                return true;
+            case 1:
+                return AccountService.deposit(username, logNormalCents(random)).isSuccess();
+            case 2:
+                return AccountService.withdraw(username, logNormalCents(random)).isSuccess();
+            default: // admin refresh: alert analysis of what was appended to the histories since the last one
+                AdminPanel.analyzeNewTransactions(UserManager.getAllUsers());
+                return true;
+        }
+    }
+
+    private static int pick(int[] mix, int roll) {
+        for (int i = 0; i < mix.length; i++) {
+            roll -= mix[i];
+            if (roll < 0) return i;
+        }
+        return mix.length - 1;
+    }
+
+    // "login=40,deposit=30,..." -> weights in OPERATIONS order; null if malformed
+    private static int[] parseMix(String text) {
+        int[] weights = new int[OPERATIONS.length];
+        int total = 0;
+        for (String part : text.split(",")) {
+            String[] pair = part.trim().split("=");
+            int op = pair.length == 2 ? Arrays.asList(OPERATIONS).indexOf(pair[0].trim()) : -1;
+            if (op < 0) return null;
+            try {
+                weights[op] = Integer.parseInt(pair[1].trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (weights[op] < 0) return null;
+            total += weights[op];
+        }
+        return total > 0 ? weights : null;
+    }
+
+    private static int intOption(List<String> options, String name, int defaultValue) {
+        String value = stringOption(options, name, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + name + " '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static String stringOption(List<String> options, String name, String defaultValue) {
+        int at = options.indexOf(name);
+        return at >= 0 && at + 1 < options.size() ? options.get(at + 1) : defaultValue;
+    }
+}